@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Object that renders a grid by evaluating the corners of quadtree cells and interpolating the smooth ones
+ *
+ * The grid is covered by cells of CELL_SIZE tiles per side whose corners are evaluated first. A cell
+ * is smooth when its centre and the middles of its edges lie within the tolerance of what
+ * interpolating its corners predicts, measured as a fraction of the range of each output seen so far,
+ * so gradients are interpolated as well as flat areas. Smooth cells are filled by bilinear
+ * interpolation, and the rest are split into four at the tiles just evaluated until their tiles are
+ * all corners. Every evaluated tile has exactly the value a full render gives it, but detail smaller
+ * than a cell that misses all of those tiles can be lost.
+ */
+public class AdaptiveSampler{
+    public static final int CELL_SIZE = 8;
+
+    private final Renderer renderer;
+    private final int numTiles;
+    private final int outputSize;
+    private final double tolerance;
+    private double[][][] vals;
+    private boolean[] evaluated;
+    private int[] rows = new int[256];
+    private int[] columns = new int[256];
+    private int queued = 0;
+    private long evaluations = 0;
+    private double[] minVals;
+    private double[] maxVals;
+
+    /**
+     * Constructor for the AdaptiveSampler object
+     * @param genome The Genome to evaluate
+     * @param numTiles How many tiles per side of the grid
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     * @param tolerance The largest difference an interpolated cell may hide, as a fraction of the range of each output
+     */
+    public AdaptiveSampler(Genome genome, int numTiles, Node.Quality quality, double tolerance){
+        this.renderer = new Renderer(genome, numTiles, quality);
+        this.numTiles = numTiles;
+        this.outputSize = genome.getOutputSize();
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Fills every tile of the grid, evaluating only where the outputs are not smooth
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     * @param threads How many threads to evaluate tiles with
+     * @return Returns the raw outputs indexed [output][row][column]
+     */
+    public double[][][] render(double[] minVals, double[] maxVals, int threads){
+        vals = new double[outputSize][numTiles][numTiles];
+        evaluated = new boolean[numTiles * numTiles];
+        evaluations = 0;
+        this.minVals = minVals.clone();
+        this.maxVals = maxVals.clone();
+
+        ArrayList<int[]> cells = new ArrayList<int[]>();
+
+        for(int i = 0; i < Math.max(1, numTiles - 1); i += CELL_SIZE){
+
+            for(int j = 0; j < Math.max(1, numTiles - 1); j += CELL_SIZE){
+                int[] cell = {i, Math.min(i + CELL_SIZE, numTiles - 1), j, Math.min(j + CELL_SIZE, numTiles - 1)};
+                queueCorners(cell);
+                cells.add(cell);
+            }
+
+        }
+
+        flush(threads);
+
+        while(!cells.isEmpty()){
+
+            for(int[] cell : cells){
+                queueMiddles(cell);
+            }
+
+            flush(threads);
+
+            ArrayList<int[]> next = new ArrayList<int[]>();
+
+            for(int[] cell : cells){
+                if(cell[1] - cell[0] <= 1 && cell[3] - cell[2] <= 1) continue;
+
+                if(isSmooth(cell)){
+                    interpolate(cell);
+                    continue;
+                }
+
+                int[] iSplits = split(cell[0], cell[1]);
+                int[] jSplits = split(cell[2], cell[3]);
+
+                for(int a = 0; a < iSplits.length - 1; a++){
+
+                    for(int b = 0; b < jSplits.length - 1; b++){
+                        int[] child = {iSplits[a], iSplits[a + 1], jSplits[b], jSplits[b + 1]};
+                        queueCorners(child);
+                        next.add(child);
+                    }
+
+                }
+
+            }
+
+            flush(threads);
+            cells = next;
+        }
+
+        renderer.close();
+        Renderer.findRange(vals, numTiles, minVals, maxVals);
+        return vals;
+    }
+
+    /**
+     * Get method for how many tiles the last render evaluated
+     * @return Returns the number of network evaluations
+     */
+    public long getEvaluations(){return evaluations;}
+
+    /**
+     * Checks if a cell can be filled by interpolating its corners
+     * @param cell The cell as {first row, last row, first column, last column}, with its corners and middles evaluated
+     * @return Returns whether every output is within the tolerance at every middle
+     */
+    private boolean isSmooth(int[] cell){
+        int mi = (cell[0] + cell[1]) / 2;
+        int mj = (cell[2] + cell[3]) / 2;
+        int[][] middles = {{mi, mj}, {mi, cell[2]}, {mi, cell[3]}, {cell[0], mj}, {cell[1], mj}};
+
+        for(int c = 0; c < outputSize; c++){
+            double[][] plane = vals[c];
+            double limit = tolerance * (maxVals[c] - minVals[c]);
+            double a = plane[cell[0]][cell[2]];
+            double b = plane[cell[1]][cell[2]];
+            double d = plane[cell[0]][cell[3]];
+            double e = plane[cell[1]][cell[3]];
+
+            for(int[] tile : middles){
+                if(Math.abs(plane[tile[0]][tile[1]] - bilinear(cell, tile[0], tile[1], a, b, d, e)) > limit) return false;
+            }
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Fills the tiles of a cell that were not evaluated by interpolating its corners
+     * @param cell The cell as {first row, last row, first column, last column}
+     */
+    private void interpolate(int[] cell){
+
+        for(int c = 0; c < outputSize; c++){
+            double[][] plane = vals[c];
+            double a = plane[cell[0]][cell[2]];
+            double b = plane[cell[1]][cell[2]];
+            double d = plane[cell[0]][cell[3]];
+            double e = plane[cell[1]][cell[3]];
+
+            for(int i = cell[0]; i <= cell[1]; i++){
+
+                for(int j = cell[2]; j <= cell[3]; j++){
+
+                    if(!evaluated[i * numTiles + j]){
+                        plane[i][j] = bilinear(cell, i, j, a, b, d, e);
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Interpolates the corners of a cell at one of its tiles
+     * @param cell The cell as {first row, last row, first column, last column}
+     * @param i The row of the tile
+     * @param j The column of the tile
+     * @param a The value at the first row and first column
+     * @param b The value at the last row and first column
+     * @param d The value at the first row and last column
+     * @param e The value at the last row and last column
+     * @return Returns the interpolated value
+     */
+    private static double bilinear(int[] cell, int i, int j, double a, double b, double d, double e){
+        double u = cell[1] == cell[0] ? 0 : (double) (i - cell[0]) / (cell[1] - cell[0]);
+        double v = cell[3] == cell[2] ? 0 : (double) (j - cell[2]) / (cell[3] - cell[2]);
+        return (1 - u) * ((1 - v) * a + v * d) + u * ((1 - v) * b + v * e);
+    }
+
+    /**
+     * Splits the span of a cell at its middle, unless it has no tiles between its ends
+     * @param start The first tile of the span
+     * @param end The last tile of the span
+     * @return Returns the ends of the parts in order
+     */
+    private static int[] split(int start, int end){
+        return end - start <= 1 ? new int[]{start, end} : new int[]{start, (start + end) / 2, end};
+    }
+
+    /**
+     * Queues the four corners of a cell for evaluation
+     * @param cell The cell as {first row, last row, first column, last column}
+     */
+    private void queueCorners(int[] cell){
+        queue(cell[0], cell[2]);
+        queue(cell[1], cell[2]);
+        queue(cell[0], cell[3]);
+        queue(cell[1], cell[3]);
+    }
+
+    /**
+     * Queues the centre and the middles of the edges of a cell for evaluation, the tiles it would be split at
+     * @param cell The cell as {first row, last row, first column, last column}
+     */
+    private void queueMiddles(int[] cell){
+        int mi = (cell[0] + cell[1]) / 2;
+        int mj = (cell[2] + cell[3]) / 2;
+        queue(mi, mj);
+        queue(mi, cell[2]);
+        queue(mi, cell[3]);
+        queue(cell[0], mj);
+        queue(cell[1], mj);
+    }
+
+    /**
+     * Queues a tile for evaluation, unless it has been evaluated or queued already
+     * @param i The row of the tile
+     * @param j The column of the tile
+     */
+    private void queue(int i, int j){
+        if(evaluated[i * numTiles + j]) return;
+
+        evaluated[i * numTiles + j] = true;
+
+        if(queued == rows.length){
+            rows = Arrays.copyOf(rows, queued * 2);
+            columns = Arrays.copyOf(columns, queued * 2);
+        }
+
+        rows[queued] = i;
+        columns[queued] = j;
+        queued++;
+    }
+
+    /**
+     * Evaluates every queued tile and widens the range of each output to cover them
+     * @param threads How many threads to evaluate tiles with
+     */
+    private void flush(int threads){
+        renderer.renderPoints(vals, rows, columns, queued, threads);
+        evaluations += queued;
+
+        for(int c = 0; c < outputSize; c++){
+
+            for(int p = 0; p < queued; p++){
+                double val = vals[c][rows[p]][columns[p]];
+
+                if(val > maxVals[c]){
+                    maxVals[c] = val;
+                }
+
+                if(val < minVals[c]){
+                    minVals[c] = val;
+                }
+
+            }
+
+        }
+
+        queued = 0;
+    }
+
+}
\ No newline at end of file
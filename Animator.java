@@ -0,0 +1,240 @@
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Object that renders the frames of an animation of a Genome, whose TIME input goes from -1 at the first frame to 1 at the last
+ *
+ * The network is compiled once for every frame. Before the first frame, every Node that does not
+ * depend on TIME is evaluated over the whole grid, and the planes of the ones that feed a Node that
+ * does, or that are outputs, are kept for every row. Each frame then only evaluates the Nodes that
+ * depend on TIME, reading the kept planes and sharing work along and between rows the way Renderer
+ * does, which gives exactly the outputs of rendering the frame on its own. The kept planes take one
+ * double per tile each, so a network whose kept planes would pass MAX_KEPT_VALUES evaluates every
+ * Node for every frame instead. Rows are spread over a single ForkJoinPool kept for the life of the
+ * Animator, as in Renderer, so the two passes over the frames do not start a pool per frame.
+ */
+public class Animator implements Closeable{
+    public static final long MAX_KEPT_VALUES = 1L << 25;
+
+    private static final int BAND_ROWS = 4;
+
+    private final CompiledNetwork network;
+    private final Genome.InputType[] inputTypes;
+    private final int numTiles;
+    private final int frames;
+    private final int timeSlot;
+    private final int[] frontier;
+    private double[][][] kept = null;
+    private ForkJoinPool pool = null;
+
+    /**
+     * Constructor for the Animator object
+     * @param genome The Genome to animate
+     * @param numTiles How many tiles per side of the grid
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     * @param frames How many frames the animation has
+     */
+    public Animator(Genome genome, int numTiles, Node.Quality quality, int frames){
+        this.network = genome.getNetwork().withQuality(quality);
+        this.inputTypes = genome.getInputs();
+        this.numTiles = numTiles;
+        this.frames = frames;
+        this.timeSlot = Arrays.asList(inputTypes).indexOf(Genome.InputType.TIME);
+        this.frontier = network.findFrontier(CompiledNetwork.DEPENDS_ON_TIME);
+    }
+
+    /**
+     * Finds the value of the TIME input at a frame
+     * @param frame The index of the frame
+     * @param frames How many frames the animation has
+     * @return Returns a value from -1 at the first frame to 1 at the last, or 0 if there is only one frame
+     */
+    public static double getTime(int frame, int frames){
+        return frames <= 1 ? 0 : 2.0 * (double) frame / (frames - 1) - 1;
+    }
+
+    /**
+     * Get method for the number of frames of the animation
+     * @return Returns how many frames the animation has
+     */
+    public int getFrames(){return frames;}
+
+    /**
+     * Evaluates the Nodes that do not depend on TIME and keeps the planes the frames read, unless they would not fit
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    public void prepare(int threads){
+        if((long) frontier.length * numTiles * numTiles > MAX_KEPT_VALUES) return;
+
+        kept = new double[frontier.length][numTiles][];
+        run(null, 0, threads);
+    }
+
+    /**
+     * Evaluates every tile of a frame
+     * @param vals The raw outputs to fill, indexed [output][row][column]
+     * @param frame The index of the frame
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    public void renderFrame(double[][][] vals, int frame, int threads){
+        run(vals, getTime(frame, frames), threads);
+    }
+
+    /**
+     * Evaluates every row of the grid, splitting the rows into bands if there is more than one thread
+     * @param vals The raw outputs to fill, indexed [output][row][column], or null to fill the kept planes
+     * @param time The value of the TIME input
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    private void run(double[][][] vals, double time, int threads){
+
+        if(threads <= 1 || numTiles <= BAND_ROWS){
+            evaluateRows(vals, time, 0, numTiles);
+            return;
+        }
+
+        getPool(threads).invoke(new Band(vals, time, 0, numTiles, Math.max(1, numTiles / (threads * 4))));
+    }
+
+    /**
+     * Get method for the pool rows are spread over, creating it the first time it is needed
+     *
+     * The pool is replaced if a call asks for a different number of threads than the last one.
+     * @param threads How many threads the pool should have
+     * @return Returns the pool of this Animator
+     */
+    private synchronized ForkJoinPool getPool(int threads){
+
+        if(pool == null || pool.getParallelism() != threads){
+            if(pool != null) pool.shutdown();
+
+            pool = new ForkJoinPool(threads);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Shuts down the pool of this Animator, which is created again if the Animator is used afterwards
+     */
+    @Override
+    public synchronized void close(){
+
+        if(pool != null){
+            pool.shutdown();
+            pool = null;
+        }
+
+    }
+
+    /**
+     * Evaluates a band of rows with a single set of value planes
+     *
+     * Without vals, every Node is evaluated and the planes of the frontier are kept. With vals, only
+     * the Nodes that depend on TIME are evaluated if the frontier was kept, and every Node otherwise.
+     * @param vals The raw outputs to fill, indexed [output][row][column], or null to fill the kept planes
+     * @param time The value of the TIME input
+     * @param start The first row to evaluate
+     * @param end The row after the last row to evaluate
+     */
+    private void evaluateRows(double[][][] vals, double time, int start, int end){
+        double[][] inputPlanes = new double[Genome.InputType.values().length][numTiles];
+        double[][] planes = network.newPlanes(numTiles);
+        double[][] outputPlanes = new double[network.getOutputSize()][numTiles];
+        double[] timePlane = inputPlanes[Genome.InputType.TIME.ordinal()];
+        Arrays.fill(timePlane, time);
+        boolean sameColumns = false;
+
+        for(int i = start; i < end; i++){
+
+            if(vals != null){
+
+                for(int c = 0; c < outputPlanes.length; c++){
+                    outputPlanes[c] = vals[c][i];
+                }
+
+            }
+
+            if(vals == null || kept == null){
+                Renderer.fillInputs(inputPlanes, i, numTiles, inputTypes);
+                network.predictRow(inputPlanes, outputPlanes, numTiles, planes, sameColumns);
+                sameColumns = true;
+
+                if(vals == null){
+
+                    for(int s = 0; s < frontier.length; s++){
+                        kept[s][i] = planes[frontier[s]].clone();
+                    }
+
+                }
+
+                continue;
+            }
+
+            // the kept planes are only read, since no Node that depends on TIME is part of the frontier
+            for(int s = 0; s < frontier.length; s++){
+                planes[frontier[s]] = kept[s][i];
+            }
+
+            if(timeSlot >= 0){
+                planes[timeSlot] = timePlane;
+            }
+
+            network.evaluateDependent(planes, numTiles, CompiledNetwork.DEPENDS_ON_TIME, sameColumns);
+            sameColumns = true;
+
+            for(int c = 0; c < outputPlanes.length; c++){
+                System.arraycopy(planes[network.getOutputSlot(c)], 0, outputPlanes[c], 0, numTiles);
+            }
+
+        }
+
+    }
+
+    /**
+     * Fork/join task that splits a band of rows in half until it is small enough to evaluate
+     */
+    private class Band extends RecursiveAction{
+        public static final long serialVersionUID = 10483786;
+        private double[][][] vals;
+        private double time;
+        private int start;
+        private int end;
+        private int grain;
+
+        /**
+         * Constructor of the Band object
+         * @param vals The raw outputs to fill, indexed [output][row][column], or null to fill the kept planes
+         * @param time The value of the TIME input
+         * @param start The first row to evaluate
+         * @param end The row after the last row to evaluate
+         * @param grain The most rows evaluated without splitting
+         */
+        public Band(double[][][] vals, double time, int start, int end, int grain){
+            this.vals = vals;
+            this.time = time;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        /**
+         * Evaluates the band, or splits it and evaluates both halves in parallel
+         */
+        @Override
+        protected void compute(){
+
+            if(end - start <= grain){
+                evaluateRows(vals, time, start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new Band(vals, time, start, middle, grain), new Band(vals, time, middle, end, grain));
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Microbenchmarks of the evaluation and mutation hot paths, run as java Benchmark (case...) with any of predict, render, compile, mutate and gen
+ *
+ * Every case is warmed up for WARMUP_ITERATIONS iterations so the JIT settles before
+ * ITERATIONS iterations are measured, each running batches of operations until ITERATION_NANOS of
+ * measured time have passed. Work that only sets up a batch is left out of the time. Every Genome
+ * is generated from SEED the way Main generates them, so results are comparable between runs and
+ * between changes. Results are consumed so the JIT cannot drop the work.
+ */
+public class Benchmark{
+    public static final long SEED = 52120201109L;
+    public static final int WARMUP_ITERATIONS = 3;
+    public static final int ITERATIONS = 5;
+    public static final long ITERATION_NANOS = 500_000_000L;
+    public static final List<String> CASES = Arrays.asList("predict", "render", "compile", "mutate", "gen");
+
+    private static final int[] COMPLEXITIES = {10, 100, 1000};
+    private static final int[] COMPILE_COMPLEXITIES = {10, 100, 1000, 5000};
+    private static final int[] TILES = {100, 200, 400};
+    private static final Genome.InputType[][] INPUT_SETS = {
+        {Genome.InputType.X, Genome.InputType.Y},
+        {Genome.InputType.X, Genome.InputType.Y, Genome.InputType.DIST},
+        {Genome.InputType.X, Genome.InputType.Y, Genome.InputType.DIST, Genome.InputType.THETA, Genome.InputType.COUNTER}
+    };
+
+    private static double sink = 0;
+
+    /**
+     * Runs the requested cases, or every case if none are given
+     * @param args The names of the cases to run
+     */
+    public static void main(String[] args){
+        List<String> cases = args.length == 0 ? CASES : Arrays.asList(args);
+
+        for(String name : cases){
+            if(!CASES.contains(name)) throw new Error("Unknown case " + name + ", expected one of " + CASES);
+        }
+
+        System.out.printf("%-10s %-34s %14s %12s %14s%n", "Case", "Parameters", "ns/op", "error", "ops/s");
+
+        if(cases.contains("predict")) benchmarkPredict();
+        if(cases.contains("render")) benchmarkRender();
+        if(cases.contains("compile")) benchmarkCompile();
+        if(cases.contains("mutate")) benchmarkMutate();
+        if(cases.contains("gen")) benchmarkGenomeFile();
+
+        // keeps every result live
+        if(sink == 42) System.out.println();
+    }
+
+    /**
+     * Times a single Genome.predict() call across complexities and input sets
+     */
+    private static void benchmarkPredict(){
+
+        for(Genome.InputType[] inputs : INPUT_SETS){
+
+            for(int complexity : COMPLEXITIES){
+                Genome genome = generate(inputs, complexity, SEED);
+                double[] state = new double[inputs.length];
+
+                measure("predict", "cmplx=" + complexity + " inputs=" + inputs.length, 1000, operations -> {
+                    long start = System.nanoTime();
+
+                    for(int k = 0; k < operations; k++){
+                        Arrays.fill(state, k * 1e-3);
+                        sink += genome.predict(state)[0];
+                    }
+
+                    return System.nanoTime() - start;
+                });
+            }
+
+        }
+
+    }
+
+    /**
+     * Times a full-grid render on one thread at several grid sizes
+     */
+    private static void benchmarkRender(){
+        Genome genome = generate(INPUT_SETS[1], 100, SEED);
+
+        for(int tiles : TILES){
+
+            measure("render", "cmplx=100 tiles=" + tiles, 1, operations -> {
+                long start = System.nanoTime();
+
+                for(int k = 0; k < operations; k++){
+                    sink += new Renderer(genome, tiles, Node.Quality.EXACT).render(1)[0][0][0];
+                }
+
+                return System.nanoTime() - start;
+            });
+        }
+
+    }
+
+    /**
+     * Times Genome.compile() as the number of Genes grows
+     */
+    private static void benchmarkCompile(){
+
+        for(int complexity : COMPILE_COMPLEXITIES){
+            Genome genome = generate(INPUT_SETS[1], complexity, SEED);
+
+            measure("compile", "cmplx=" + complexity + " genes=" + genome.getGenes().size(), 1, operations -> {
+                long start = System.nanoTime();
+
+                for(int k = 0; k < operations; k++){
+                    genome.compile();
+                    sink += genome.getNetwork().getNodeCount();
+                }
+
+                return System.nanoTime() - start;
+            });
+        }
+
+    }
+
+    /**
+     * Times generateLink() and generateNode() on fresh copies of Genomes of several sizes, so the Genome does not grow without bound
+     */
+    private static void benchmarkMutate(){
+
+        for(int complexity : COMPLEXITIES){
+            ByteBuffer encoded = GenomeFile.encode(generate(INPUT_SETS[1], complexity, SEED));
+
+            for(boolean node : new boolean[]{false, true}){
+
+                measure("mutate", (node ? "generateNode" : "generateLink") + " cmplx=" + complexity, 100, operations -> {
+                    Genome genome = copy(encoded);
+                    Genome.setSeed(SEED);
+                    long start = System.nanoTime();
+
+                    for(int k = 0; k < operations; k++){
+
+                        if(node){
+                            genome.generateNode();
+                        } else{
+                            genome.generateLink();
+                        }
+
+                    }
+
+                    long time = System.nanoTime() - start;
+                    sink += genome.getGenes().size();
+                    return time;
+                });
+            }
+
+        }
+
+    }
+
+    /**
+     * Times encoding a Genome to the .gen format and decoding it again
+     */
+    private static void benchmarkGenomeFile(){
+
+        for(int complexity : COMPLEXITIES){
+            Genome genome = generate(INPUT_SETS[2], complexity, SEED);
+
+            measure("gen", "round-trip cmplx=" + complexity, 10, operations -> {
+                long start = System.nanoTime();
+
+                for(int k = 0; k < operations; k++){
+                    sink += copy(GenomeFile.encode(genome)).getOutputSize();
+                }
+
+                return System.nanoTime() - start;
+            });
+        }
+
+    }
+
+    /**
+     * Generates a Genome the way Main does, from a fixed seed
+     * @param inputs The InputTypes of the Genome
+     * @param complexity How many mutation rounds to apply
+     * @param seed The seed of every random choice
+     * @return Returns the compiled Genome
+     */
+    public static Genome generate(Genome.InputType[] inputs, int complexity, long seed){
+        Genome.setSeed(seed);
+        Random random = new Random(seed);
+        Genome genome = new Genome(inputs, 3, false, new InnovationRegistry());
+
+        for(int i = 0; i < complexity; i++){
+
+            if(random.nextDouble() >= 0.5){
+                genome.generateLink();
+            } else{
+                genome.generateNode();
+            }
+
+            genome.mutateWeights();
+            genome.mutateActivation();
+        }
+
+        genome.compile();
+        return genome;
+    }
+
+    /**
+     * Decodes an encoded Genome, leaving the encoding as it was
+     * @param encoded The Genome in the .gen format
+     * @return Returns the decoded Genome
+     */
+    private static Genome copy(ByteBuffer encoded){
+
+        try{
+            return GenomeFile.decode(encoded.duplicate());
+        } catch(IOException e){
+            throw new Error("Could not decode a Genome that was just encoded", e);
+        }
+
+    }
+
+    /**
+     * Warms up a case, then measures it and prints the mean time per operation with its standard deviation over the iterations
+     * @param name The name of the case
+     * @param parameters The parameters of the case
+     * @param operations How many operations to run per batch
+     * @param batch The batch to time
+     */
+    private static void measure(String name, String parameters, int operations, Batch batch){
+        double[] scores = new double[ITERATIONS];
+
+        for(int iteration = -WARMUP_ITERATIONS; iteration < ITERATIONS; iteration++){
+            long time = 0;
+            long count = 0;
+
+            while(time < ITERATION_NANOS){
+                time += batch.time(operations);
+                count += operations;
+            }
+
+            if(iteration >= 0){
+                scores[iteration] = (double) time / count;
+            }
+
+        }
+
+        double mean = Arrays.stream(scores).average().getAsDouble();
+        double deviation = Math.sqrt(Arrays.stream(scores).map(score -> (score - mean) * (score - mean)).sum() / Math.max(1, ITERATIONS - 1));
+        System.out.printf("%-10s %-34s %14.1f %12.1f %14.1f%n", name, parameters, mean, deviation, 1e9 / mean);
+    }
+
+    /**
+     * A batch of operations of a case
+     */
+    private interface Batch{
+
+        /**
+         * Runs a batch of operations, timing only the part that is measured
+         * @param operations How many operations to run
+         * @return Returns the nanoseconds the measured part took
+         */
+        long time(int operations);
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,734 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, topologically sorted evaluation program built from a Genome
+ *
+ * Value slots 0 to inputSize - 1 hold the network inputs, slot inputSize holds the bias and every
+ * following slot holds the output of one evaluated Node, in evaluation order. The incoming links of
+ * each evaluated Node are stored in a CSR-style edge list of source slots and weights, in the same
+ * order Node.getOutput() sums them so results match it exactly.
+ */
+public class CompiledNetwork{
+    public static final int DEPENDS_ON_X = 1;
+    public static final int DEPENDS_ON_Y = 2;
+    public static final int DEPENDS_ON_TIME = 4;
+
+    private static final Node.ActivationFunction[] FUNCTIONS = Node.ActivationFunction.values();
+
+    private final Genome.InputType[] inputTypes;
+    private final Node.Quality quality;
+    private final int inputSize;
+    private final int outputSize;
+    private final int[] order;
+    private final int[] opcodes;
+    private final int[] edgeStart;
+    private final int[] edgeSource;
+    private final double[] edgeWeight;
+    private final int[] outputSlots;
+    private final int[] dependencies;
+
+    /**
+     * Compiles the network formed by the Nodes of a Genome
+     *
+     * Nodes are ordered the same way Node.getOutput() visits them, starting from each output in
+     * turn and following each Node's inputs in order. An input whose Node is still being evaluated
+     * when it is reached reads 0 in the recursive evaluation, so that link is left out here. Input
+     * Nodes that are no longer part of the network only ever output their last value, so their
+     * links are folded into links from the bias.
+     * @param network The Nodes of the network keyed by ID
+     * @param inputTypes The InputType of each input of the network
+     * @param outputSize The number of outputs of the network
+     */
+    public CompiledNetwork(Map<Integer, Node> network, Genome.InputType[] inputTypes, int outputSize){
+        this.inputTypes = inputTypes;
+        this.quality = Node.Quality.EXACT;
+        this.inputSize = inputTypes.length;
+        this.outputSize = outputSize;
+
+        IdentityHashMap<Node, Integer> slots = new IdentityHashMap<Node, Integer>();
+        IdentityHashMap<Node, ArrayList<Node>> emitted = new IdentityHashMap<Node, ArrayList<Node>>();
+        ArrayList<Node> orderList = new ArrayList<Node>();
+
+        for(int i = 0; i < inputSize + 1; i++){
+            slots.put(network.get(i), i);
+        }
+
+        // iterative depth first search mirroring Node.getOutput()
+        for(int i = 0; i < outputSize; i++){
+            Node root = network.get(i + inputSize + 1);
+            if(slots.containsKey(root) || emitted.containsKey(root)) continue;
+
+            ArrayList<Node> stack = new ArrayList<Node>();
+            ArrayList<Integer> positions = new ArrayList<Integer>();
+            stack.add(root);
+            positions.add(0);
+            emitted.put(root, new ArrayList<Node>());
+
+            while(!stack.isEmpty()){
+                int top = stack.size() - 1;
+                Node node = stack.get(top);
+                int position = positions.get(top);
+                List<Node> inputs = node.getInputs();
+
+                if(position >= inputs.size()){
+                    stack.remove(top);
+                    positions.remove(top);
+                    slots.put(node, inputSize + 1 + orderList.size());
+                    orderList.add(node);
+                    continue;
+                }
+
+                positions.set(top, position + 1);
+                Node source = inputs.get(position);
+
+                if(slots.containsKey(source) || source.getType() == Node.NodeType.INPUT){
+                    emitted.get(node).add(source);
+                } else if(!emitted.containsKey(source)){
+                    emitted.get(node).add(source);
+                    emitted.put(source, new ArrayList<Node>());
+                    stack.add(source);
+                    positions.add(0);
+                }
+
+            }
+
+        }
+
+        // flattening into arrays
+        int size = orderList.size();
+        this.order = new int[size];
+        this.opcodes = new int[size];
+        this.edgeStart = new int[size + 1];
+        int edgeCount = 0;
+
+        for(Node node : orderList){
+            edgeCount += emitted.get(node).size();
+        }
+
+        this.edgeSource = new int[edgeCount];
+        this.edgeWeight = new double[edgeCount];
+        int edge = 0;
+
+        for(int k = 0; k < size; k++){
+            Node node = orderList.get(k);
+            Node.ActivationFunction func = node.getActivationFunction();
+            order[k] = node.getType() == Node.NodeType.OUTPUT ? node.getID() + inputSize + 1 : node.getID();
+            opcodes[k] = (func == null ? Node.ActivationFunction.LINEAR : func).ordinal();
+            edgeStart[k] = edge;
+
+            for(Node source : emitted.get(node)){
+                Integer slot = slots.get(source);
+
+                if(slot == null){
+                    edgeSource[edge] = inputSize;
+                    edgeWeight[edge] = source.getGene(node).invoke(source.getOutput());
+                } else{
+                    edgeSource[edge] = slot;
+                    edgeWeight[edge] = source.getGene(node).getWeight();
+                }
+
+                edge++;
+            }
+
+        }
+
+        edgeStart[size] = edge;
+        this.outputSlots = new int[outputSize];
+
+        for(int i = 0; i < outputSize; i++){
+            outputSlots[i] = slots.get(network.get(i + inputSize + 1));
+        }
+
+        this.dependencies = findDependencies(inputTypes, edgeStart, edgeSource);
+    }
+
+    /**
+     * Constructor for a copy of a CompiledNetwork evaluated at another Quality
+     * @param other The CompiledNetwork to share the program of
+     * @param quality The Quality of the ActivationFunctions
+     */
+    private CompiledNetwork(CompiledNetwork other, Node.Quality quality){
+        this.inputTypes = other.inputTypes;
+        this.quality = quality;
+        this.inputSize = other.inputSize;
+        this.outputSize = other.outputSize;
+        this.order = other.order;
+        this.opcodes = other.opcodes;
+        this.edgeStart = other.edgeStart;
+        this.edgeSource = other.edgeSource;
+        this.edgeWeight = other.edgeWeight;
+        this.outputSlots = other.outputSlots;
+        this.dependencies = other.dependencies;
+    }
+
+    /**
+     * Constructor for a CompiledNetwork from the arrays of its program
+     * @param inputTypes The InputType of each input of the network
+     * @param outputSize The number of outputs of the network
+     * @param order The ID of each evaluated Node
+     * @param opcodes The ActivationFunction ordinal of each evaluated Node
+     * @param edgeStart The index of the first link of each evaluated Node, plus the total at the end
+     * @param edgeSource The value slot read by each link
+     * @param edgeWeight The weight of each link
+     * @param outputSlots The value slot of each output
+     */
+    private CompiledNetwork(Genome.InputType[] inputTypes, int outputSize, int[] order, int[] opcodes, int[] edgeStart, int[] edgeSource, double[] edgeWeight, int[] outputSlots){
+        this.inputTypes = inputTypes;
+        this.quality = Node.Quality.EXACT;
+        this.inputSize = inputTypes.length;
+        this.outputSize = outputSize;
+        this.order = order;
+        this.opcodes = opcodes;
+        this.edgeStart = edgeStart;
+        this.edgeSource = edgeSource;
+        this.edgeWeight = edgeWeight;
+        this.outputSlots = outputSlots;
+        this.dependencies = findDependencies(inputTypes, edgeStart, edgeSource);
+    }
+
+    /**
+     * Finds which coordinates each evaluated Node depends on through its links
+     *
+     * X only changes between rows and Y only between columns, while DIST, THETA and COUNTER depend on
+     * both. TIME only changes between frames of an animation. A Node fed by none of them, such as one
+     * fed only by the bias, is the same for every tile of every frame.
+     * @param inputTypes The InputType of each input of the network
+     * @param edgeStart The index of the first link of each evaluated Node, plus the total at the end
+     * @param edgeSource The value slot read by each link
+     * @return Returns the DEPENDS_ON_X, DEPENDS_ON_Y and DEPENDS_ON_TIME flags of each evaluated Node
+     */
+    private static int[] findDependencies(Genome.InputType[] inputTypes, int[] edgeStart, int[] edgeSource){
+        int base = inputTypes.length + 1;
+        int[] dependencies = new int[edgeStart.length - 1];
+
+        for(int k = 0; k < dependencies.length; k++){
+
+            for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+                int source = edgeSource[e];
+
+                if(source >= base){
+                    dependencies[k] |= dependencies[source - base];
+                } else if(source < inputTypes.length){
+                    dependencies[k] |= getDependencies(inputTypes[source]);
+                }
+
+            }
+
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Finds which coordinates an input depends on
+     * @param input The InputType of the input
+     * @return Returns the DEPENDS_ON_X, DEPENDS_ON_Y and DEPENDS_ON_TIME flags of the input
+     */
+    private static int getDependencies(Genome.InputType input){
+
+        switch(input){
+            case X:
+                return DEPENDS_ON_X;
+            case Y:
+                return DEPENDS_ON_Y;
+            case TIME:
+                return DEPENDS_ON_TIME;
+            default:
+                return DEPENDS_ON_X | DEPENDS_ON_Y;
+        }
+
+    }
+
+    /**
+     * Get method for the number of bytes encode() writes
+     * @return Returns the encoded size of the program
+     */
+    public int getEncodedSize(){
+        return 8 + order.length * 9 + 4 + edgeSource.length * 12 + outputSize * 4;
+    }
+
+    /**
+     * Writes the program to a buffer, which decode() reads back
+     * @param buffer The buffer to write to, with at least getEncodedSize() bytes remaining
+     */
+    public void encode(ByteBuffer buffer){
+        buffer.putInt(order.length);
+        buffer.putInt(edgeSource.length);
+
+        for(int k = 0; k < order.length; k++){
+            buffer.putInt(order[k]);
+            buffer.put((byte) opcodes[k]);
+            buffer.putInt(edgeStart[k]);
+        }
+
+        buffer.putInt(edgeStart[order.length]);
+
+        for(int e = 0; e < edgeSource.length; e++){
+            buffer.putInt(edgeSource[e]);
+            buffer.putDouble(edgeWeight[e]);
+        }
+
+        for(int slot : outputSlots){
+            buffer.putInt(slot);
+        }
+
+    }
+
+    /**
+     * Reads a program written by encode(), checking that every slot it reads has been evaluated before
+     * @param buffer The buffer to read from, advanced past the program
+     * @param inputTypes The InputType of each input of the network
+     * @param outputSize The number of outputs of the network
+     * @return Returns the decoded CompiledNetwork
+     * @throws IOException If the program is malformed
+     */
+    public static CompiledNetwork decode(ByteBuffer buffer, Genome.InputType[] inputTypes, int outputSize) throws IOException{
+        int size = buffer.getInt();
+        int edgeCount = buffer.getInt();
+        if(size < 0 || edgeCount < 0 || (long) size * 9 + (long) edgeCount * 12 + (long) outputSize * 4 > buffer.remaining()) throw new IOException("Malformed network size");
+
+        int base = inputTypes.length + 1;
+        int[] order = new int[size];
+        int[] opcodes = new int[size];
+        int[] edgeStart = new int[size + 1];
+        int[] edgeSource = new int[edgeCount];
+        double[] edgeWeight = new double[edgeCount];
+        int[] outputSlots = new int[outputSize];
+
+        for(int k = 0; k < size; k++){
+            order[k] = buffer.getInt();
+            opcodes[k] = buffer.get() & 0xFF;
+            edgeStart[k] = buffer.getInt();
+            if(opcodes[k] >= FUNCTIONS.length) throw new IOException("Unknown activation function " + opcodes[k]);
+        }
+
+        edgeStart[size] = buffer.getInt();
+
+        for(int e = 0; e < edgeCount; e++){
+            edgeSource[e] = buffer.getInt();
+            edgeWeight[e] = buffer.getDouble();
+        }
+
+        for(int k = 0; k < size; k++){
+            if(edgeStart[k] < 0 || edgeStart[k] > edgeStart[k + 1] || edgeStart[k + 1] > edgeCount) throw new IOException("Malformed edge list");
+
+            for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+                if(edgeSource[e] < 0 || edgeSource[e] >= base + k) throw new IOException("Link reads a slot that is not evaluated yet");
+            }
+
+        }
+
+        if(edgeStart[size] != edgeCount) throw new IOException("Malformed edge list");
+
+        for(int i = 0; i < outputSize; i++){
+            outputSlots[i] = buffer.getInt();
+            if(outputSlots[i] < 0 || outputSlots[i] >= base + size) throw new IOException("Output reads an unknown slot");
+        }
+
+        return new CompiledNetwork(inputTypes, outputSize, order, opcodes, edgeStart, edgeSource, edgeWeight, outputSlots);
+    }
+
+    /**
+     * Returns this program evaluated at another Quality, sharing its arrays
+     * @param quality The Quality of the ActivationFunctions
+     * @return Returns a CompiledNetwork evaluating the same program
+     */
+    public CompiledNetwork withQuality(Node.Quality quality){
+        return quality == this.quality ? this : new CompiledNetwork(this, quality);
+    }
+
+    /**
+     * Passes a state through the network to obtain outputs
+     * @param state The double array of inputs
+     * @return Returns the double array of outputs
+     */
+    public double[] predict(double[] state){
+        double[] values = new double[getSlotCount()];
+        System.arraycopy(state, 0, values, 0, inputSize);
+        evaluate(values);
+
+        double[] outputs = new double[outputSize];
+
+        for(int i = 0; i < outputSize; i++){
+            outputs[i] = values[outputSlots[i]];
+        }
+
+        return outputs;
+    }
+
+    /**
+     * Evaluates every Node in order, reading the inputs from the first inputSize slots
+     * @param values The value slots of the network, at least getSlotCount() long
+     */
+    public void evaluate(double[] values){
+        values[inputSize] = 1;
+        int base = inputSize + 1;
+
+        for(int k = 0; k < order.length; k++){
+            double rawOutput = 0;
+
+            for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+                rawOutput += values[edgeSource[e]] * edgeWeight[e];
+            }
+
+            Node.ActivationFunction func = FUNCTIONS[opcodes[k]];
+            values[base + k] = quality == Node.Quality.FAST ? func.invokeFast(rawOutput) : func.invoke(rawOutput);
+        }
+
+    }
+
+    /**
+     * Bounds every Node over a box of states with interval arithmetic
+     *
+     * Each sum is accumulated in the same order as evaluate() does it and every rounding step is
+     * monotonic, so the bounds hold exactly for the outputs evaluate() gives any state in the box.
+     * They are only kept for exact ActivationFunctions.
+     * @param lows The value slots of the network, at least getSlotCount() long, with the lowest inputs in the first inputSize slots
+     * @param highs The value slots of the network, at least getSlotCount() long, with the highest inputs in the first inputSize slots
+     */
+    public void evaluateBounds(double[] lows, double[] highs){
+        if(quality != Node.Quality.EXACT) throw new Error("Bounds only hold for exact activation functions");
+
+        lows[inputSize] = 1;
+        highs[inputSize] = 1;
+        int base = inputSize + 1;
+
+        for(int k = 0; k < order.length; k++){
+            double lo = 0;
+            double hi = 0;
+
+            for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+                double weight = edgeWeight[e];
+
+                if(weight >= 0){
+                    lo += lows[edgeSource[e]] * weight;
+                    hi += highs[edgeSource[e]] * weight;
+                } else{
+                    lo += highs[edgeSource[e]] * weight;
+                    hi += lows[edgeSource[e]] * weight;
+                }
+
+            }
+
+            double[] bounds = FUNCTIONS[opcodes[k]].bound(lo, hi);
+            lows[base + k] = bounds[0];
+            highs[base + k] = bounds[1];
+        }
+
+    }
+
+    /**
+     * Evaluates a batch of states one Node at a time, reading the inputs from the first inputSize planes
+     *
+     * Each Node is evaluated across the whole batch before moving on to the next one, which keeps
+     * the inner loops simple enough for the JIT to vectorize.
+     * @param planes The value planes of the network from newPlanes(), with the input planes filled in
+     * @param length The number of states in the batch
+     */
+    public void evaluateBatch(double[][] planes, int length){
+
+        for(int k = 0; k < order.length; k++){
+            evaluateNode(planes, k, length);
+        }
+
+    }
+
+    /**
+     * Evaluates only the Nodes of a row that depend on a coordinate, keeping the planes of the rest
+     *
+     * Nodes are evaluated as often as their dependencies change along the row, the same way
+     * predictRow() does it.
+     * @param planes The value planes of the network, with the planes from findFrontier() filled in
+     * @param length The number of states in the row
+     * @param flag The DEPENDS_ON_ flag of the coordinate that changed
+     * @param sameColumns Whether the last call on these planes was a row with the same Y inputs and the same coordinate
+     */
+    public void evaluateDependent(double[][] planes, int length, int flag, boolean sameColumns){
+        evaluateRow(planes, length, sameColumns, flag, null);
+    }
+
+    /**
+     * Evaluates the Nodes of a row, skipping the ones whose planes are still valid from the last row
+     * @param planes The value planes of the network, with the input planes filled in
+     * @param length The number of states in the row
+     * @param sameColumns Whether the last call on these planes was a row with the same Y inputs
+     * @param flag The DEPENDS_ON_ flag a Node needs to be evaluated at all, or 0 to consider every Node
+     * @param counters The Counters to record every evaluated Node in, or null to record nothing
+     */
+    private void evaluateRow(double[][] planes, int length, boolean sameColumns, int flag, NodeProfiler.Counters counters){
+        int base = inputSize + 1;
+        boolean sampled = counters != null && counters.nextRow();
+
+        for(int k = 0; k < order.length; k++){
+            if(flag != 0 && (dependencies[k] & flag) == 0) continue;
+
+            int dependency = dependencies[k] & (DEPENDS_ON_X | DEPENDS_ON_Y);
+            long start = sampled ? System.nanoTime() : 0;
+            int states;
+
+            if(dependency == DEPENDS_ON_X){
+                evaluateNode(planes, k, 1);
+                Arrays.fill(planes[base + k], 1, length, planes[base + k][0]);
+                states = 1;
+            } else if((dependency & DEPENDS_ON_X) != 0 || !sameColumns){
+                evaluateNode(planes, k, length);
+                states = length;
+            } else{
+                continue;
+            }
+
+            if(counters != null){
+                counters.record(k, states, sampled ? System.nanoTime() - start : -1);
+            }
+
+        }
+
+    }
+
+    /**
+     * Finds the value slots that evaluateDependent() reads but does not write for a coordinate
+     *
+     * These are the inputs and Nodes that do not depend on the coordinate but feed a Node that does or
+     * are outputs themselves, which is all that has to be kept to evaluate the network again when only
+     * that coordinate changes. The bias is left out since newPlanes() fills it.
+     * @param flag The DEPENDS_ON_ flag of the coordinate that changes
+     * @return Returns the slot indices in increasing order
+     */
+    public int[] findFrontier(int flag){
+        int base = inputSize + 1;
+        boolean[] frontier = new boolean[getSlotCount()];
+
+        for(int k = 0; k < order.length; k++){
+            if((dependencies[k] & flag) == 0) continue;
+
+            for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+                frontier[edgeSource[e]] = true;
+            }
+
+        }
+
+        for(int i = 0; i < outputSize; i++){
+            frontier[outputSlots[i]] = true;
+        }
+
+        int count = 0;
+        int[] slots = new int[frontier.length];
+
+        for(int s = 0; s < frontier.length; s++){
+            if(!frontier[s] || s == inputSize) continue;
+
+            int dependency = s < inputSize ? getDependencies(inputTypes[s]) : dependencies[s - base];
+
+            if((dependency & flag) == 0){
+                slots[count++] = s;
+            }
+
+        }
+
+        return Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Evaluates one Node across a batch of states
+     * @param planes The value planes of the network, with the planes of the Node's sources filled in
+     * @param k The index of the Node in evaluation order
+     * @param length The number of states in the batch
+     */
+    private void evaluateNode(double[][] planes, int k, int length){
+        double[] rawOutput = planes[inputSize + 1 + k];
+        Arrays.fill(rawOutput, 0, length, 0);
+
+        for(int e = edgeStart[k]; e < edgeStart[k + 1]; e++){
+            double[] source = planes[edgeSource[e]];
+            double weight = edgeWeight[e];
+
+            for(int p = 0; p < length; p++){
+                rawOutput[p] += source[p] * weight;
+            }
+
+        }
+
+        if(quality == Node.Quality.FAST){
+            FUNCTIONS[opcodes[k]].invokeFast(rawOutput, length);
+        } else{
+            FUNCTIONS[opcodes[k]].invoke(rawOutput, length);
+        }
+
+    }
+
+    /**
+     * Get method for the coordinates an evaluated Node depends on
+     * @param k The index of the Node in evaluation order
+     * @return Returns the DEPENDS_ON_X, DEPENDS_ON_Y and DEPENDS_ON_TIME flags of the Node
+     */
+    public int getDependencies(int k){return dependencies[k];}
+
+    /**
+     * Passes a batch of states through the network to obtain a batch of outputs
+     * @param inputPlanes The input values of each state indexed by InputType ordinal, planes of InputTypes the network does not use may be null
+     * @param outputPlanes The arrays to fill with the values of each output
+     * @param length The number of states in the batch
+     * @param planes The value planes from newPlanes(), reused between calls to avoid allocation
+     */
+    public void predictBatch(double[][] inputPlanes, double[][] outputPlanes, int length, double[][] planes){
+        if(planes.length != getSlotCount()) throw new Error("Value planes do not match the network");
+
+        for(int i = 0; i < inputSize; i++){
+            planes[i] = inputPlanes[inputTypes[i].ordinal()];
+        }
+
+        evaluateBatch(planes, length);
+
+        for(int i = 0; i < outputSize; i++){
+            System.arraycopy(planes[outputSlots[i]], 0, outputPlanes[i], 0, length);
+        }
+
+    }
+
+    /**
+     * Passes a row of states through the network, evaluating each Node only as often as its dependencies change
+     *
+     * Every state of the row shares its X input, so Nodes that depend on X alone are evaluated for the
+     * first state and copied along the row. Nodes that depend on neither X nor Y, or on Y alone, are
+     * the same for every row with the same columns, so their planes are kept from the last call when
+     * sameColumns is set. TIME is the same for every state of a render, so it is left out of the
+     * decision. Only the rest are evaluated for every state.
+     * @param inputPlanes The input values of each state indexed by InputType ordinal, planes of InputTypes the network does not use may be null
+     * @param outputPlanes The arrays to fill with the values of each output
+     * @param length The number of states in the row
+     * @param planes The value planes from newPlanes(), reused between calls to avoid allocation
+     * @param sameColumns Whether the last call on these planes was a row with the same Y inputs
+     */
+    public void predictRow(double[][] inputPlanes, double[][] outputPlanes, int length, double[][] planes, boolean sameColumns){
+        predictRow(inputPlanes, outputPlanes, length, planes, sameColumns, null);
+    }
+
+    /**
+     * Passes a row of states through the network like predictRow(), recording every evaluated Node for a NodeProfiler
+     * @param inputPlanes The input values of each state indexed by InputType ordinal, planes of InputTypes the network does not use may be null
+     * @param outputPlanes The arrays to fill with the values of each output
+     * @param length The number of states in the row
+     * @param planes The value planes from newPlanes(), reused between calls to avoid allocation
+     * @param sameColumns Whether the last call on these planes was a row with the same Y inputs
+     * @param counters The Counters of the calling thread, or null to record nothing
+     */
+    public void predictRow(double[][] inputPlanes, double[][] outputPlanes, int length, double[][] planes, boolean sameColumns, NodeProfiler.Counters counters){
+        if(planes.length != getSlotCount()) throw new Error("Value planes do not match the network");
+
+        for(int i = 0; i < inputSize; i++){
+            planes[i] = inputPlanes[inputTypes[i].ordinal()];
+        }
+
+        evaluateRow(planes, length, sameColumns, 0, counters);
+
+        for(int i = 0; i < outputSize; i++){
+            System.arraycopy(planes[outputSlots[i]], 0, outputPlanes[i], 0, length);
+        }
+
+    }
+
+    /**
+     * Allocates the value planes used by evaluateBatch()
+     *
+     * The input planes are left null for the caller to fill in or point at its own arrays, and the
+     * bias plane is filled with 1.
+     * @param capacity The largest batch the planes will be used for
+     * @return Returns an array of getSlotCount() planes
+     */
+    public double[][] newPlanes(int capacity){
+        double[][] planes = new double[getSlotCount()][];
+
+        for(int i = inputSize; i < planes.length; i++){
+            planes[i] = new double[capacity];
+        }
+
+        Arrays.fill(planes[inputSize], 1);
+        return planes;
+    }
+
+    /**
+     * Get method for the number of value slots used during evaluation
+     * @return Returns the number of inputs, the bias and every evaluated Node
+     */
+    public int getSlotCount(){return inputSize + 1 + order.length;}
+
+    /**
+     * Get method for the number of evaluated Nodes
+     * @return Returns the length of the evaluation order
+     */
+    public int getNodeCount(){return order.length;}
+
+    /**
+     * Get method for the ID of an evaluated Node in its Genome
+     * @param k The index of the Node in evaluation order
+     * @return Returns the Node ID, offset by the number of inputs and the bias for outputs
+     */
+    public int getNodeID(int k){return order[k];}
+
+    /**
+     * Get method for the ActivationFunction of an evaluated Node
+     * @param k The index of the Node in evaluation order
+     * @return Returns the ActivationFunction of the Node
+     */
+    public Node.ActivationFunction getActivationFunction(int k){return FUNCTIONS[opcodes[k]];}
+
+    /**
+     * Get method for the number of links into an evaluated Node
+     * @param k The index of the Node in evaluation order
+     * @return Returns the number of source slots the Node sums
+     */
+    public int getFanIn(int k){return edgeStart[k + 1] - edgeStart[k];}
+
+    /**
+     * Get method for the value slot a link into an evaluated Node reads
+     * @param k The index of the Node in evaluation order
+     * @param i The index of the link among the Node's links
+     * @return Returns the source slot of the link
+     */
+    public int getSourceSlot(int k, int i){return edgeSource[edgeStart[k] + i];}
+
+    /**
+     * Get method for the InputType of an input slot
+     * @param i The index of the input
+     * @return Returns the InputType read into the slot
+     */
+    public Genome.InputType getInputType(int i){return inputTypes[i];}
+
+    /**
+     * Get method for the number of links used during evaluation
+     * @return Returns the length of the edge list
+     */
+    public int getEdgeCount(){return edgeSource.length;}
+
+    /**
+     * Get method for the Quality the ActivationFunctions are evaluated at
+     * @return Returns the Quality of this program
+     */
+    public Node.Quality getQuality(){return quality;}
+
+    /**
+     * Get method for the number of inputs of the network
+     * @return Returns the number of inputs, not counting the bias
+     */
+    public int getInputSize(){return inputSize;}
+
+    /**
+     * Get method for the number of outputs of the network
+     * @return Returns the number of outputs
+     */
+    public int getOutputSize(){return outputSize;}
+
+    /**
+     * Get method for the value slot holding an output
+     * @param i The index of the output
+     * @return Returns the slot index of the output
+     */
+    public int getOutputSlot(int i){return outputSlots[i];}
+
+}
\ No newline at end of file
@@ -0,0 +1,451 @@
+import com.sun.management.ThreadMXBean;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.imageio.ImageIO;
+
+/**
+ * End-to-end benchmark that renders a fixed corpus of seeded Genomes through the same steps as Main and checks every image against a golden checksum
+ *
+ * Run headless as java CorpusBenchmark (ARG NAME)=(ARG VALUE) with TILES, THREADS, WARMUP, OUT,
+ * GOLDEN and UPDATE. Each entry is built, evaluated and normalized by Main.renderGrid(), coloured by
+ * Main.toImage() and encoded to a PNG in memory, and the checksum is taken from the PNG decoded again,
+ * so a change to any step that alters the image shows up as a mismatch. The corpus covers every
+ * InputType and every ActivationFunction with complexities from 10 to 10000. Allocation is counted on
+ * the harness thread, so it only covers the whole pipeline with THREADS=1, the default.
+ */
+public class CorpusBenchmark{
+    public static final int DEF_TILES = 200;
+    public static final int DEF_THREADS = 1;
+    public static final int DEF_WARMUP = 1;
+    public static final String DEF_OUT = "corpus.json";
+    public static final String DEF_GOLDEN = "corpus.golden";
+
+    private static final Entry[] CORPUS = {
+        new Entry("x-10", 10, Genome.InputType.X),
+        new Entry("y-10", 10, Genome.InputType.Y),
+        new Entry("dist-100", 100, Genome.InputType.DIST),
+        new Entry("theta-100", 100, Genome.InputType.THETA),
+        new Entry("counter-100", 100, Genome.InputType.COUNTER),
+        new Entry("time-100", 100, Genome.InputType.X, Genome.InputType.TIME),
+        new Entry("xy-1000", 1000, Genome.InputType.X, Genome.InputType.Y),
+        new Entry("xyd-1000", 1000, Genome.InputType.X, Genome.InputType.Y, Genome.InputType.DIST),
+        new Entry("all-1000", 1000, Genome.InputType.values()),
+        new Entry("xyd-10000", 10000, Genome.InputType.X, Genome.InputType.Y, Genome.InputType.DIST),
+        new Entry("all-10000", 10000, Genome.InputType.values())
+    };
+
+    private static int tiles = DEF_TILES;
+    private static int threads = DEF_THREADS;
+    private static int warmup = DEF_WARMUP;
+    private static String out = DEF_OUT;
+    private static String golden = DEF_GOLDEN;
+    private static boolean update = false;
+
+    /**
+     * Renders the corpus, prints a line per entry and writes the results as JSON
+     *
+     * Exits with status 1 if any image does not match its golden checksum.
+     * @param args The options of the run
+     * @throws IOException If the goldens or the results could not be read or written
+     */
+    public static void main(String[] args) throws IOException{
+        System.setProperty("java.awt.headless", "true");
+
+        for(String arg : args){
+            parseString(arg);
+        }
+
+        Main.numTiles = tiles;
+        Path goldenPath = Paths.get(golden);
+        Map<String, String> goldens = readGoldens(goldenPath);
+        checkCoverage();
+
+        for(int pass = 0; pass < warmup; pass++){
+
+            for(Entry entry : CORPUS){
+                run(entry);
+            }
+
+        }
+
+        System.out.printf("%-12s %6s %8s %10s %14s %12s %14s  %s%n", "Entry", "cmplx", "nodes", "seconds", "pixels/s", "peak MB", "alloc MB/s", "golden");
+
+        List<Result> results = new ArrayList<Result>();
+        int mismatches = 0;
+
+        for(Entry entry : CORPUS){
+            Result result = run(entry);
+            String key = entry.name + " " + tiles;
+            String expected = goldens.get(key);
+
+            if(update){
+                goldens.put(key, result.checksum);
+                result.golden = "updated";
+            } else if(expected == null){
+                result.golden = "missing";
+            } else if(expected.equals(result.checksum)){
+                result.golden = "match";
+            } else{
+                result.golden = "mismatch";
+                mismatches++;
+            }
+
+            results.add(result);
+            System.out.printf("%-12s %6d %8d %10.3f %14.0f %12.1f %14.1f  %s%n", entry.name, entry.complexity, result.nodes, result.totalNanos() / 1e9,
+                result.pixelsPerSecond(), result.peakHeap / 1048576.0, result.allocationRate() / 1048576.0, result.golden);
+        }
+
+        if(update) writeGoldens(goldenPath, goldens);
+
+        Files.write(Paths.get(out), toJson(results, mismatches).getBytes(StandardCharsets.UTF_8));
+        System.out.println("Wrote " + out + (mismatches > 0 ? ", " + mismatches + " images differ from their goldens" : ""));
+
+        if(mismatches > 0) System.exit(1);
+    }
+
+    /**
+     * Builds, renders, colours and encodes a single entry, measuring each step
+     * @param entry The entry of the corpus
+     * @return Returns the measurements and checksum of the entry
+     * @throws IOException If the image could not be encoded or decoded
+     */
+    private static Result run(Entry entry) throws IOException{
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Result result = new Result(entry);
+
+        System.gc();
+        resetPeakHeap();
+        long allocated = threadBean.getThreadAllocatedBytes(thread);
+
+        long start = System.nanoTime();
+        Genome genome = Benchmark.generate(entry.inputs, entry.complexity, Benchmark.SEED);
+        long built = System.nanoTime();
+
+        double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[][][] vals = Main.renderGrid(genome, threads, minVals, maxVals, new RenderMetrics(entry.name, tiles, threads), null);
+        long evaluated = System.nanoTime();
+
+        BufferedImage image = Main.toImage(vals, minVals, maxVals);
+        long colored = System.nanoTime();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        PngWriter.write(image, png, Main.DEF_PNG_LEVEL, threads);
+        long encoded = System.nanoTime();
+
+        result.allocated = threadBean.getThreadAllocatedBytes(thread) - allocated;
+        result.peakHeap = getPeakHeap();
+        result.nodes = genome.getNetwork().getNodeCount();
+        result.genes = genome.getGenes().size();
+        result.buildNanos = built - start;
+        result.evaluateNanos = evaluated - built;
+        result.colorNanos = colored - evaluated;
+        result.encodeNanos = encoded - colored;
+        result.pngBytes = png.size();
+        result.checksum = checksum(ImageIO.read(new ByteArrayInputStream(png.toByteArray())));
+        return result;
+    }
+
+    /**
+     * Checks that the corpus uses every InputType and every ActivationFunction at least once
+     */
+    private static void checkCoverage(){
+        EnumSet<Genome.InputType> inputs = EnumSet.noneOf(Genome.InputType.class);
+        EnumSet<Node.ActivationFunction> functions = EnumSet.noneOf(Node.ActivationFunction.class);
+
+        for(Entry entry : CORPUS){
+            inputs.addAll(Arrays.asList(entry.inputs));
+            functions.addAll(Benchmark.generate(entry.inputs, entry.complexity, Benchmark.SEED).getActivations().values());
+        }
+
+        if(inputs.size() < Genome.InputType.values().length) throw new Error("Corpus misses inputs " + EnumSet.complementOf(inputs));
+        if(functions.size() < Node.ActivationFunction.values().length) throw new Error("Corpus misses activation functions " + EnumSet.complementOf(functions));
+    }
+
+    /**
+     * Hashes the pixels of a decoded image
+     * @param image The image read back from its PNG
+     * @return Returns the first 16 bytes of the SHA-256 of the pixels as hex
+     */
+    private static String checksum(BufferedImage image){
+
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int[] row = new int[image.getWidth()];
+
+            for(int y = 0; y < image.getHeight(); y++){
+                image.getRGB(0, y, row.length, 1, row, 0, row.length);
+
+                for(int rgb : row){
+                    digest.update((byte) (rgb >> 16));
+                    digest.update((byte) (rgb >> 8));
+                    digest.update((byte) rgb);
+                }
+
+            }
+
+            StringBuilder hex = new StringBuilder();
+
+            for(byte b : Arrays.copyOf(digest.digest(), 16)){
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch(NoSuchAlgorithmException e){
+            throw new Error("SHA-256 is not available", e);
+        }
+
+    }
+
+    /**
+     * Resets the peak usage of every heap memory pool
+     */
+    private static void resetPeakHeap(){
+
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+
+    }
+
+    /**
+     * Adds up the peak usage of every heap memory pool since the last reset
+     * @return Returns the peak heap use in bytes
+     */
+    private static long getPeakHeap(){
+        long peak = 0;
+
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+
+        return peak;
+    }
+
+    /**
+     * Reads the golden checksums, one "(entry) (tiles) (checksum)" line each
+     * @param path The goldens file
+     * @return Returns the checksum of each entry and tile count, empty if the file does not exist
+     * @throws IOException If the file could not be read
+     */
+    private static Map<String, String> readGoldens(Path path) throws IOException{
+        Map<String, String> goldens = new TreeMap<String, String>();
+        if(!Files.exists(path)) return goldens;
+
+        for(String line : Files.readAllLines(path, StandardCharsets.UTF_8)){
+            String[] fields = line.trim().split("\\s+");
+            if(fields.length != 3 || fields[0].startsWith("#")) continue;
+
+            goldens.put(fields[0] + " " + fields[1], fields[2]);
+        }
+
+        return goldens;
+    }
+
+    /**
+     * Writes the golden checksums, one "(entry) (tiles) (checksum)" line each
+     * @param path The goldens file
+     * @param goldens The checksum of each entry and tile count
+     * @throws IOException If the file could not be written
+     */
+    private static void writeGoldens(Path path, Map<String, String> goldens) throws IOException{
+        StringBuilder text = new StringBuilder("# entry tiles checksum, written by java CorpusBenchmark UPDATE=true\n");
+
+        for(Map.Entry<String, String> golden : goldens.entrySet()){
+            text.append(golden.getKey()).append(' ').append(golden.getValue()).append('\n');
+        }
+
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Formats the results of a run as JSON
+     * @param results The result of every entry
+     * @param mismatches How many images differ from their goldens
+     * @return Returns the JSON document
+     */
+    private static String toJson(List<Result> results, int mismatches){
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"tiles\": ").append(tiles).append(",\n");
+        json.append("  \"threads\": ").append(threads).append(",\n");
+        json.append("  \"warmup\": ").append(warmup).append(",\n");
+        json.append("  \"entries\": [\n");
+
+        long pixels = 0;
+        long nanos = 0;
+        long allocated = 0;
+        long peakHeap = 0;
+
+        for(int i = 0; i < results.size(); i++){
+            Result result = results.get(i);
+            pixels += (long) tiles * tiles;
+            nanos += result.totalNanos();
+            allocated += result.allocated;
+            peakHeap = Math.max(peakHeap, result.peakHeap);
+
+            json.append("    {\"name\": \"").append(result.entry.name).append("\", \"inputs\": \"");
+
+            for(int k = 0; k < result.entry.inputs.length; k++){
+                json.append(k == 0 ? "" : ",").append(result.entry.inputs[k]);
+            }
+
+            json.append("\", \"complexity\": ").append(result.entry.complexity);
+            json.append(", \"nodes\": ").append(result.nodes);
+            json.append(", \"genes\": ").append(result.genes);
+            json.append(", \"pixels\": ").append((long) tiles * tiles);
+            json.append(", \"buildSeconds\": ").append(result.buildNanos / 1e9);
+            json.append(", \"evaluateSeconds\": ").append(result.evaluateNanos / 1e9);
+            json.append(", \"colorizeSeconds\": ").append(result.colorNanos / 1e9);
+            json.append(", \"encodeSeconds\": ").append(result.encodeNanos / 1e9);
+            json.append(", \"seconds\": ").append(result.totalNanos() / 1e9);
+            json.append(", \"pixelsPerSecond\": ").append(Math.round(result.pixelsPerSecond()));
+            json.append(", \"peakHeapBytes\": ").append(result.peakHeap);
+            json.append(", \"allocatedBytes\": ").append(result.allocated);
+            json.append(", \"allocationBytesPerSecond\": ").append(Math.round(result.allocationRate()));
+            json.append(", \"pngBytes\": ").append(result.pngBytes);
+            json.append(", \"checksum\": \"").append(result.checksum);
+            json.append("\", \"golden\": \"").append(result.golden).append("\"}");
+            json.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+
+        json.append("  ],\n");
+        json.append("  \"totals\": {\"pixels\": ").append(pixels);
+        json.append(", \"seconds\": ").append(nanos / 1e9);
+        json.append(", \"pixelsPerSecond\": ").append(Math.round(pixels * 1e9 / nanos));
+        json.append(", \"peakHeapBytes\": ").append(peakHeap);
+        json.append(", \"allocatedBytes\": ").append(allocated);
+        json.append(", \"allocationBytesPerSecond\": ").append(Math.round(allocated * 1e9 / nanos));
+        json.append(", \"mismatches\": ").append(mismatches).append("}\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Sets options of the run
+     * @param str The option as (ARG NAME)=(ARG VALUE)
+     */
+    private static void parseString(String str){
+        int split = str.indexOf('=');
+        if(split < 0) throw new Error("Options must be (ARG NAME)=(ARG VALUE), got " + str);
+
+        String name = str.substring(0, split);
+        String value = str.substring(split + 1);
+
+        try{
+
+            if(name.equals("TILES")){
+                tiles = Integer.parseInt(value);
+            } else if(name.equals("THREADS")){
+                threads = Integer.parseInt(value);
+            } else if(name.equals("WARMUP")){
+                warmup = Integer.parseInt(value);
+            } else if(name.equals("OUT")){
+                out = value;
+            } else if(name.equals("GOLDEN")){
+                golden = value;
+            } else if(name.equals("UPDATE")){
+                update = Boolean.parseBoolean(value);
+            } else{
+                throw new Error("Unknown option " + name + ", expected TILES, THREADS, WARMUP, OUT, GOLDEN or UPDATE");
+            }
+
+        } catch(NumberFormatException e){
+            throw new Error("Could not read " + name, e);
+        }
+
+    }
+
+    /**
+     * A seeded Genome of the corpus
+     */
+    private static class Entry{
+        private final String name;
+        private final int complexity;
+        private final Genome.InputType[] inputs;
+
+        /**
+         * Constructor for the Entry object
+         * @param name The name the entry is reported and stored under
+         * @param complexity How many mutation rounds to apply
+         * @param inputs The InputTypes of the Genome
+         */
+        private Entry(String name, int complexity, Genome.InputType... inputs){
+            this.name = name;
+            this.complexity = complexity;
+            this.inputs = inputs;
+        }
+
+    }
+
+    /**
+     * The measurements of one entry
+     */
+    private static class Result{
+        private final Entry entry;
+        private int nodes;
+        private int genes;
+        private long buildNanos;
+        private long evaluateNanos;
+        private long colorNanos;
+        private long encodeNanos;
+        private long peakHeap;
+        private long allocated;
+        private int pngBytes;
+        private String checksum;
+        private String golden;
+
+        /**
+         * Constructor for the Result object
+         * @param entry The entry that was measured
+         */
+        private Result(Entry entry){
+            this.entry = entry;
+        }
+
+        /**
+         * Adds up the time of every step
+         * @return Returns the nanoseconds from building the Genome to finishing the PNG
+         */
+        private long totalNanos(){
+            return buildNanos + evaluateNanos + colorNanos + encodeNanos;
+        }
+
+        /**
+         * Works out the throughput of the whole pipeline
+         * @return Returns the pixels rendered per second
+         */
+        private double pixelsPerSecond(){
+            return (double) tiles * tiles * 1e9 / totalNanos();
+        }
+
+        /**
+         * Works out how fast the pipeline allocated
+         * @return Returns the bytes allocated per second
+         */
+        private double allocationRate(){
+            return allocated * 1e9 / totalNanos();
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,414 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.KeyStroke;
+
+/**
+ * JPanel that shows a rendered grid and lets the user pan and zoom over the continuous input domain of its Genome
+ *
+ * Painting only blits the last image that was rendered, scaled and shifted to wherever its part of
+ * the domain lies in the current view, so repaints never evaluate anything. Dragging pans, the mouse
+ * wheel zooms about the cursor and R returns to the grid. Every change of view starts a render of
+ * one point per pixel on a background thread, in passes of increasing density like PROGRESSIVE, that
+ * is shown once the coarsest pass is done and then repainted as it refines, at most once per
+ * FRAME_BUDGET_NANOS. A newer view abandons the render of an older one. Colours use the range of
+ * the grid, so they stay the same while moving around.
+ */
+public class Explorer extends JPanel{
+    public static final long serialVersionUID = 10483787;
+    public static final int[] STEPS = {8, 4, 2, 1};
+    public static final long FRAME_BUDGET_NANOS = 33_000_000;
+    public static final double ZOOM_STEP = 1.25;
+    public static final int COLUMN_GRAIN = 8;
+
+    private final CompiledNetwork network;
+    private final Genome.InputType[] inputTypes;
+    private final int resolution;
+    private final int numTiles;
+    private final int threads;
+    private final ExecutorService worker;
+    private final ForkJoinPool pool;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile double[] minVals;
+    private volatile double[] maxVals;
+    private volatile View grid = null;
+    private volatile View current = null;
+    private volatile View shown = null;
+    private volatile boolean explored = false;
+    private int dragX;
+    private int dragY;
+
+    /**
+     * Constructor of the Explorer object
+     * @param genome The Genome to explore
+     * @param resolution How many pixels per side of the component
+     * @param numTiles How many tiles per side of the rendered grid
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     * @param threads How many threads to render views with
+     */
+    public Explorer(Genome genome, int resolution, int numTiles, Node.Quality quality, int threads){
+        this.network = genome.getNetwork().withQuality(quality);
+        this.inputTypes = genome.getInputs();
+        this.resolution = resolution;
+        this.numTiles = numTiles;
+        this.threads = threads;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Explorer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setPreferredSize(new Dimension(resolution, resolution));
+
+        MouseAdapter mouse = new MouseAdapter(){
+
+            @Override
+            public void mousePressed(MouseEvent e){
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e){
+                View view = current;
+                if(view == null) return;
+
+                moveTo(new View(null, view.originX - (e.getX() - dragX) * view.spacing, view.originY - (e.getY() - dragY) * view.spacing, view.spacing));
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e){
+                View view = current;
+                if(view == null) return;
+
+                // keeps the point under the cursor in place
+                double spacing = view.spacing * Math.pow(ZOOM_STEP, e.getPreciseWheelRotation());
+                double x = view.originX + e.getX() * view.spacing;
+                double y = view.originY + e.getY() * view.spacing;
+                moveTo(new View(null, x - e.getX() * spacing, y - e.getY() * spacing, spacing));
+            }
+
+        };
+
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter(){
+
+            @Override
+            public void componentResized(ComponentEvent e){
+                if(explored) moveTo(current);
+            }
+
+        });
+
+        getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_R, 0), "reset");
+        getActionMap().put("reset", new AbstractAction(){
+            public static final long serialVersionUID = 10483788;
+
+            @Override
+            public void actionPerformed(ActionEvent e){
+                reset();
+            }
+
+        });
+    }
+
+    /**
+     * Shows a rendered grid at the size JCanvas used to paint it, one square of resolution / numTiles pixels per tile
+     *
+     * The view stays where it is if the user has moved away from the grid, but later renders use the new range.
+     * @param image The grid as written to file, a TYPE_INT_RGB image with rows along x and the first output in the lowest byte
+     * @param minVals The minimum of each output over the grid
+     * @param maxVals The maximum of each output over the grid
+     */
+    public void showGrid(BufferedImage image, double[] minVals, double[] maxVals){
+        int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        BufferedImage screen = new BufferedImage(numTiles, numTiles, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) screen.getRaster().getDataBuffer()).getData();
+
+        // the screen shows x across and the first output as red
+        for(int i = 0; i < numTiles; i++){
+
+            for(int j = 0; j < numTiles; j++){
+                int rgb = source[i * numTiles + j];
+                pixels[j * numTiles + i] = (rgb & 0xFF) << 16 | (rgb & 0xFF00) | (rgb >> 16 & 0xFF);
+            }
+
+        }
+
+        // tile i is drawn from pixel i * size, so its centre at 2i / (numTiles - 1) - 1 lies at pixel (i + 0.5) * size
+        int size = Math.max(1, resolution / numTiles);
+        double tileSpacing = 2.0 / Math.max(1, numTiles - 1);
+        double origin = -1 - tileSpacing / 2;
+
+        this.minVals = minVals.clone();
+        this.maxVals = maxVals.clone();
+        this.grid = new View(screen, origin, origin, tileSpacing);
+
+        if(!explored){
+            current = new View(null, origin, origin, tileSpacing / size);
+            shown = grid;
+        }
+
+        repaint();
+    }
+
+    /**
+     * Returns to the rendered grid and abandons the render of the current view
+     */
+    public void reset(){
+        View view = grid;
+        if(view == null) return;
+
+        generation.incrementAndGet();
+        explored = false;
+        current = new View(null, view.originX, view.originY, view.spacing / Math.max(1, resolution / numTiles));
+        shown = view;
+        repaint();
+    }
+
+    /**
+     * Moves to a new view and starts rendering it in the background
+     * @param view The new view, without an image
+     */
+    private void moveTo(View view){
+        if(grid == null || getWidth() <= 0 || getHeight() <= 0) return;
+
+        explored = true;
+        current = view;
+        int render = generation.incrementAndGet();
+        int width = getWidth();
+        int height = getHeight();
+        worker.submit(() -> renderView(render, view, width, height));
+        repaint();
+    }
+
+    /**
+     * Blits the last rendered image wherever its part of the domain lies in the current view
+     * @param gr The Graphics object of the Explorer
+     */
+    @Override
+    public void paint(Graphics gr){
+        gr.setColor(Color.BLACK);
+        gr.fillRect(0, 0, getWidth(), getHeight());
+
+        View view = current;
+        View image = shown;
+        if(view == null || image == null) return;
+
+        double scale = image.spacing / view.spacing;
+        int left = (int) Math.round((image.originX - view.originX) / view.spacing);
+        int top = (int) Math.round((image.originY - view.originY) / view.spacing);
+        int width = (int) Math.round(image.image.getWidth() * scale);
+        int height = (int) Math.round(image.image.getHeight() * scale);
+        gr.drawImage(image.image, left, top, width, height, null);
+    }
+
+    /**
+     * Renders a view one point per pixel in passes of increasing density, showing it as it refines
+     * @param render The generation of the render, which stops once a newer one starts
+     * @param view The view to render
+     * @param width How many pixels across
+     * @param height How many pixels down
+     */
+    private void renderView(int render, View view, int width, int height){
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        View result = new View(image, view.originX, view.originY, view.spacing);
+        int chunk = Math.max(1, threads) * COLUMN_GRAIN;
+        long lastShown = 0;
+        int previousStep = 0;
+
+        for(int step : STEPS){
+            int columns = (width - 1) / step + 1;
+
+            for(int from = 0; from < columns; from += chunk){
+                if(generation.get() != render) return;
+
+                int to = Math.min(columns, from + chunk);
+
+                if(pool == null){
+                    evaluateColumns(view, pixels, width, height, step, previousStep, from, to);
+                } else{
+                    pool.invoke(new Columns(view, pixels, width, height, step, previousStep, from, to));
+                }
+
+                // the coarsest pass is shown whole, so no black gaps are ever shown
+                if(previousStep != 0 && System.nanoTime() - lastShown > FRAME_BUDGET_NANOS){
+                    shown = result;
+                    repaint();
+                    lastShown = System.nanoTime();
+                }
+
+            }
+
+            if(generation.get() != render) return;
+
+            shown = result;
+            repaint();
+            lastShown = System.nanoTime();
+            previousStep = step;
+        }
+
+    }
+
+    /**
+     * Evaluates the points of a range of columns of a pass that were not on the previous pass, filling a block of pixels with each
+     * @param view The view being rendered
+     * @param pixels The pixels of the image of the view
+     * @param width How many pixels across
+     * @param height How many pixels down
+     * @param step The distance between points of this pass in both directions
+     * @param previousStep The step of the pass before, or 0 if there was none
+     * @param from The first column of the pass, counted in steps
+     * @param to The column after the last column of the pass, counted in steps
+     */
+    private void evaluateColumns(View view, int[] pixels, int width, int height, int step, int previousStep, int from, int to){
+        double[][] inputPlanes = new double[Genome.InputType.values().length][height];
+        double[][] planes = network.newPlanes(height);
+        double[][] outputPlanes = new double[network.getOutputSize()][height];
+        double[] ys = new double[height];
+        int[] rows = new int[height];
+        double[] minVals = this.minVals;
+        double[] maxVals = this.maxVals;
+        boolean lastCoarse = false;
+        boolean first = true;
+
+        for(int column = from; column < to; column++){
+            int px = column * step;
+            boolean coarse = previousStep != 0 && px % previousStep == 0;
+            int count = 0;
+
+            for(int py = 0; py < height; py += step){
+                if(coarse && py % previousStep == 0) continue;
+
+                rows[count] = py;
+                ys[count] = view.originY + (py + 0.5) * view.spacing;
+                count++;
+            }
+
+            if(count == 0) continue;
+
+            // a column of points shares x, and columns of the same kind share every y
+            Renderer.fillViewInputs(inputPlanes, view.originX + (px + 0.5) * view.spacing, ys, count, numTiles, inputTypes);
+            network.predictRow(inputPlanes, outputPlanes, count, planes, !first && coarse == lastCoarse);
+            lastCoarse = coarse;
+            first = false;
+
+            for(int p = 0; p < count; p++){
+                int rgb = 0;
+
+                for(int c = 0; c < 3; c++){
+                    rgb |= Renderer.toChannel(outputPlanes[c][p], minVals[c], maxVals[c]) << (16 - 8 * c);
+                }
+
+                for(int y = rows[p]; y < Math.min(height, rows[p] + step); y++){
+                    Arrays.fill(pixels, y * width + px, y * width + Math.min(width, px + step), rgb);
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Part of the input domain shown across the component, along with the image rendered for it if there is one
+     */
+    private static class View{
+        private final BufferedImage image;
+        private final double originX;
+        private final double originY;
+        private final double spacing;
+
+        /**
+         * Constructor of the View object
+         * @param image The image rendered for the view, or null
+         * @param originX The x coordinate of the left edge
+         * @param originY The y coordinate of the top edge
+         * @param spacing The distance between neighbouring pixels, or tiles for the grid
+         */
+        public View(BufferedImage image, double originX, double originY, double spacing){
+            this.image = image;
+            this.originX = originX;
+            this.originY = originY;
+            this.spacing = spacing;
+        }
+
+    }
+
+    /**
+     * Fork/join task that splits a range of columns of a pass in half until it is small enough to evaluate
+     */
+    private class Columns extends RecursiveAction{
+        public static final long serialVersionUID = 10483789;
+        private View view;
+        private int[] pixels;
+        private int width;
+        private int height;
+        private int step;
+        private int previousStep;
+        private int from;
+        private int to;
+
+        /**
+         * Constructor of the Columns object
+         * @param view The view being rendered
+         * @param pixels The pixels of the image of the view
+         * @param width How many pixels across
+         * @param height How many pixels down
+         * @param step The distance between points of this pass in both directions
+         * @param previousStep The step of the pass before, or 0 if there was none
+         * @param from The first column of the pass, counted in steps
+         * @param to The column after the last column of the pass, counted in steps
+         */
+        public Columns(View view, int[] pixels, int width, int height, int step, int previousStep, int from, int to){
+            this.view = view;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.step = step;
+            this.previousStep = previousStep;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Evaluates the columns, or splits them and evaluates both halves in parallel
+         */
+        @Override
+        protected void compute(){
+
+            if(to - from <= COLUMN_GRAIN){
+                evaluateColumns(view, pixels, width, height, step, previousStep, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Columns(view, pixels, width, height, step, previousStep, from, middle), new Columns(view, pixels, width, height, step, previousStep, middle, to));
+        }
+
+    }
+
+}
\ No newline at end of file
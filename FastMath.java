@@ -0,0 +1,122 @@
+/**
+ * Table-based approximations of the transcendental functions used by the activation functions
+ *
+ * Each function documents its maximum error against the java.lang.Math equivalent over its whole
+ * input range. All of them are far below the 1/254 colour step of a normalized channel, and
+ * inputs outside the reduced range fall back to Math so results never diverge.
+ */
+public final class FastMath{
+    private static final int EXP_BITS = 6;
+    private static final int EXP_SIZE = 1 << EXP_BITS;
+    private static final double[] EXP_TABLE = new double[EXP_SIZE];
+
+    private static final int SIN_SIZE = 256;
+    private static final double[] SIN_TABLE = new double[SIN_SIZE + 1];
+    private static final double[] COS_TABLE = new double[SIN_SIZE + 1];
+
+    private static final double LN2 = Math.log(2.0);
+    private static final double LOG2E = 1.0 / LN2;
+    private static final double SIN_STEP = 2.0 * Math.PI / SIN_SIZE;
+
+    static{
+
+        for(int i = 0; i < EXP_SIZE; i++){
+            EXP_TABLE[i] = Math.pow(2.0, (double) i / EXP_SIZE);
+        }
+
+        for(int i = 0; i <= SIN_SIZE; i++){
+            SIN_TABLE[i] = Math.sin(i * SIN_STEP);
+            COS_TABLE[i] = Math.cos(i * SIN_STEP);
+        }
+
+    }
+
+    private FastMath(){}
+
+    /**
+     * Base 2 exponential, relative error below 4e-15
+     * @param x The exponent
+     * @return Returns 2 raised to x
+     */
+    public static double exp2(double x){
+        if(!(x > -1022 && x < 1023)) return Math.pow(2.0, x);
+
+        double scaled = x * EXP_SIZE;
+        double whole = Math.floor(scaled);
+        int index = (int) whole;
+        double r = (scaled - whole) * (LN2 / EXP_SIZE);
+
+        // e^r for r in [0, ln2 / 64) by its Taylor series, truncation error below r^6 / 720
+        double poly = 1 + r * (1 + r * (0.5 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120)))));
+        double scale = Double.longBitsToDouble((long) ((index >> EXP_BITS) + 1023) << 52);
+        return scale * EXP_TABLE[index & (EXP_SIZE - 1)] * poly;
+    }
+
+    /**
+     * Natural exponential, relative error below 1e-13 for |x| up to 700, mostly from rounding x * log2(e)
+     * @param x The exponent
+     * @return Returns e raised to x
+     */
+    public static double exp(double x){
+        return exp2(x * LOG2E);
+    }
+
+    /**
+     * Sine of a fraction of a full turn, absolute error below 4e-15 for |turns| up to 1
+     *
+     * Larger inputs are reduced exactly, so the difference to Math.sin(turns * 2 PI) beyond that
+     * comes from the rounding of turns * 2 PI in the exact version.
+     * @param turns The angle in turns, so 1 is 2 PI radians
+     * @return Returns the sine of the angle
+     */
+    public static double sinTurns(double turns){
+        if(!(Math.abs(turns) < 0x1p52)) return Math.sin(turns * 2.0 * Math.PI);
+
+        double t = turns - Math.floor(turns);
+        double scaled = t * SIN_SIZE;
+        int index = (int) scaled;
+        double b = (scaled - index) * SIN_STEP;
+        double b2 = b * b;
+
+        // sin(a + b) with b in [0, 2 PI / 256) by Taylor series, truncation error below b^7 / 5040
+        double sinB = b * (1 - b2 * (1.0 / 6 - b2 * (1.0 / 120)));
+        double cosB = 1 - b2 * (0.5 - b2 * (1.0 / 24 - b2 * (1.0 / 720)));
+        return SIN_TABLE[index] * cosB + COS_TABLE[index] * sinB;
+    }
+
+    /**
+     * Cosine of a fraction of a full turn, absolute error below 4e-15 for |turns| up to 1
+     *
+     * Larger inputs are reduced exactly, like sinTurns().
+     * @param turns The angle in turns, so 1 is 2 PI radians
+     * @return Returns the cosine of the angle
+     */
+    public static double cosTurns(double turns){
+        if(!(Math.abs(turns) < 0x1p52)) return Math.cos(turns * 2.0 * Math.PI);
+
+        double t = turns - Math.floor(turns);
+        double scaled = t * SIN_SIZE;
+        int index = (int) scaled;
+        double b = (scaled - index) * SIN_STEP;
+        double b2 = b * b;
+
+        // cos(a + b) with b in [0, 2 PI / 256) by Taylor series, truncation error below b^7 / 5040
+        double sinB = b * (1 - b2 * (1.0 / 6 - b2 * (1.0 / 120)));
+        double cosB = 1 - b2 * (0.5 - b2 * (1.0 / 24 - b2 * (1.0 / 720)));
+        return COS_TABLE[index] * cosB - SIN_TABLE[index] * sinB;
+    }
+
+    /**
+     * Hyperbolic tangent, absolute error below 2e-15
+     * @param x The input to the function
+     * @return Returns the hyperbolic tangent of x
+     */
+    public static double tanh(double x){
+        if(x > 20) return 1;
+        if(x < -20) return -1;
+        if(Math.abs(x) < 0x1p-10) return x - x * x * x / 3;
+
+        return 1 - 2 / (exp(2 * x) + 1);
+    }
+
+}
\ No newline at end of file
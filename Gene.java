@@ -41,6 +41,14 @@ public class Gene implements Serializable{
         this.innovationNumber = innovationNumber;
     }
 
+    /**
+     * Reseeds the source random weights are drawn from
+     * @param seed The new seed
+     */
+    public static void setSeed(long seed){
+        RANDOM.setSeed(seed);
+    }
+
     /**
      * Multiplies input by the Gene's weight
      * @param x The input to the Gene
@@ -1,8 +1,14 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.List;
+import java.util.Map;
 import java.util.Arrays;
 
 /**
@@ -16,30 +22,48 @@ public class Genome implements Serializable{
         Y,
         DIST,
         THETA,
-        COUNTER;
+        COUNTER,
+        TIME;
 
         private static final Random RANDOM = new Random();
-        private static final List<InputType> VALUES = Arrays.asList(InputType.values());
+
+        // TIME only means something when animating, so it is added on purpose rather than drawn at random
+        private static final List<InputType> VALUES = Arrays.asList(X, Y, DIST, THETA, COUNTER);
         private static final int SIZE = VALUES.size();
 
         public static InputType random(){
             return VALUES.get(RANDOM.nextInt(SIZE));
         }
 
+        /**
+         * Reseeds the source random() draws from
+         * @param seed The new seed
+         */
+        public static void setSeed(long seed){
+            RANDOM.setSeed(seed);
+        }
+
     }
 
-    private static int GLOBAL_INNOVATION_NUMBER = 0;
-    private static HashSet<Gene> MUTATIONS = new HashSet<Gene>();
     private static final Random RANDOM = new Random();
 
     private static double PERTURB_CHANCE = 0.8;
     private static double PERTURB_MAGNITUDE = 0.05;
     private static double ACTIVATION_MUTATION_RATE = 2.5;
+    private static int EXACT_CATCH_UP = 32;
 
     private HashMap<Integer, Node> network = new HashMap<Integer, Node>();
     private HashMap<Integer, Gene> genome = new HashMap<Integer, Gene>();
     private HashMap<Integer, Node.ActivationFunction> nodeGenome = new HashMap<Integer, Node.ActivationFunction>();
 
+    private transient CompiledNetwork program;
+    private transient InnovationRegistry registry;
+    private transient ArrayList<Gene> genes;
+    private transient int[] weightEpochs;
+    private transient int weightMutations;
+    private transient HashSet<Long> links;
+    private transient int nodeCount;
+    private transient boolean compiled;
     private InputType[] inputTypes;
 
     private int inputSize;
@@ -52,9 +76,22 @@ public class Genome implements Serializable{
      * @param generateFully Whether a fully connected genome should be initially generated or not
      */
     public Genome(InputType[] inputTypes, int outputSize, boolean generateFully){
+        this(inputTypes, outputSize, generateFully, InnovationRegistry.GLOBAL);
+    }
+
+    /**
+     * The constructor of a new Genome object with its own source of innovation numbers
+     * @param inputTypes The array of InputTypes to be used for constructing inputs to this object's network
+     * @param outputSize The number of outputs of the network
+     * @param generateFully Whether a fully connected genome should be initially generated or not
+     * @param registry The InnovationRegistry to number new links with
+     */
+    public Genome(InputType[] inputTypes, int outputSize, boolean generateFully, InnovationRegistry registry){
+        this.registry = registry;
         this.inputTypes = inputTypes;
         this.inputSize = inputTypes.length;
         this.outputSize = outputSize;
+        indexGenome();
 
         if(generateFully){
             generateFullyConnectedGenome();
@@ -75,6 +112,80 @@ public class Genome implements Serializable{
         this.inputTypes = inputTypes;
         this.inputSize = inputTypes.length;
         this.outputSize = outputSize;
+        indexGenome();
+    }
+
+    /**
+     * Rebuilds the indices of the genome that are not saved with it
+     */
+    private void indexGenome(){
+        genes = new ArrayList<Gene>(genome.values());
+        weightEpochs = new int[Math.max(16, genes.size())];
+        weightMutations = 0;
+        links = new HashSet<Long>();
+        nodeCount = Math.max(inputSize + outputSize + 1, network.size());
+
+        for(Gene gene : genes){
+            links.add(InnovationRegistry.key(gene.getInput(), gene.getOutput()));
+            nodeCount = Math.max(nodeCount, Math.max(gene.getInput(), gene.getOutput()) + 1);
+        }
+
+    }
+
+    /**
+     * Puts a Gene into the genome and its indices
+     * @param gene The Gene to be put
+     */
+    private void putGene(Gene gene){
+        genome.put(gene.getInnovationNumber(), gene);
+
+        if(genes.size() == weightEpochs.length){
+            weightEpochs = Arrays.copyOf(weightEpochs, weightEpochs.length * 2);
+        }
+
+        weightEpochs[genes.size()] = weightMutations;
+        genes.add(gene);
+        links.add(InnovationRegistry.key(gene.getInput(), gene.getOutput()));
+        nodeCount = Math.max(nodeCount, Math.max(gene.getInput(), gene.getOutput()) + 1);
+    }
+
+    /**
+     * Marks the network as changed so it is compiled again from the genome when next needed
+     */
+    private void invalidate(){
+        network.clear();
+        program = null;
+        compiled = false;
+    }
+
+    /**
+     * Gets the NodeType of a Node from its ID
+     * @param id The ID of the Node
+     * @return Returns the NodeType the Node has in the network
+     */
+    private Node.NodeType getType(int id){
+
+        if(id <= inputSize){
+            return Node.NodeType.INPUT;
+        } else if(id <= inputSize + outputSize){
+            return Node.NodeType.OUTPUT;
+        } else{
+            return Node.NodeType.HIDDEN;
+        }
+
+    }
+
+    /**
+     * Reseeds every random source used to generate and mutate Genomes, so the same calls generate the same Genomes again
+     *
+     * This only holds while a single thread generates Genomes, since the sources are shared.
+     * @param seed The new seed, from which the seed of each source is derived
+     */
+    public static void setSeed(long seed){
+        RANDOM.setSeed(seed);
+        InputType.setSeed(seed + 1);
+        Gene.setSeed(seed + 2);
+        Node.ActivationFunction.setSeed(seed + 3);
     }
 
     /**
@@ -85,6 +196,31 @@ public class Genome implements Serializable{
         return inputTypes;
     }
 
+    /**
+     * Get method for the number of outputs of the network
+     * @return Returns the number of outputs
+     */
+    public int getOutputSize(){
+        return outputSize;
+    }
+
+    /**
+     * Get method for every Gene of the genome, with its weight brought up to date
+     * @return Returns an unmodifiable list of the Genes in no particular order
+     */
+    public List<Gene> getGenes(){
+        catchUpWeights();
+        return Collections.unmodifiableList(genes);
+    }
+
+    /**
+     * Get method for the ActivationFunction of each Node that has one assigned
+     * @return Returns an unmodifiable map from Node ID to ActivationFunction
+     */
+    public Map<Integer, Node.ActivationFunction> getActivations(){
+        return Collections.unmodifiableMap(nodeGenome);
+    }
+
     /**
      * Method to add a Gene to the Genome
      * @param gene The Gene to be added
@@ -96,20 +232,66 @@ public class Genome implements Serializable{
             return;
         }
 
-        genome.put(gene.getInnovationNumber(), gene);
+        putGene(gene);
+        getRegistry().record(gene);
+        invalidate();
     }
 
     /**
      * Method to randomly perturb weights in the network
+     *
+     * The perturbations are only counted here and applied to each Gene the next time its weight is
+     * read, which draws the sum of all perturbations it missed at once.
      */
     public void mutateWeights(){
+        weightMutations++;
+        program = null;
+    }
 
-        for(Gene gene : genome.values()){
+    /**
+     * Applies the perturbations a Gene missed since its weight was last brought up to date
+     *
+     * Each missed mutateWeights() call perturbs the weight with PERTURB_CHANCE by a Gaussian, so the
+     * total is a Gaussian scaled by the square root of a binomial count. The count is drawn exactly
+     * for short gaps and from its normal approximation for long ones.
+     * @param index The index of the Gene in the genes list
+     */
+    private void catchUpWeight(int index){
+        int missed = weightMutations - weightEpochs[index];
+        if(missed == 0) return;
+
+        int perturbations = 0;
+
+        if(missed <= EXACT_CATCH_UP){
+
+            for(int i = 0; i < missed; i++){
+
+                if(RANDOM.nextDouble() < PERTURB_CHANCE){
+                    perturbations++;
+                }
 
-            if(RANDOM.nextDouble() < PERTURB_CHANCE){
-                gene.mutateWeight(RANDOM.nextGaussian() * PERTURB_MAGNITUDE);
             }
 
+        } else{
+            double mean = missed * PERTURB_CHANCE;
+            double deviation = Math.sqrt(mean * (1 - PERTURB_CHANCE));
+            perturbations = (int) Math.max(0, Math.min(missed, Math.round(mean + RANDOM.nextGaussian() * deviation)));
+        }
+
+        if(perturbations > 0){
+            genes.get(index).mutateWeight(RANDOM.nextGaussian() * PERTURB_MAGNITUDE * Math.sqrt(perturbations));
+        }
+
+        weightEpochs[index] = weightMutations;
+    }
+
+    /**
+     * Brings the weight of every Gene up to date
+     */
+    private void catchUpWeights(){
+
+        for(int i = 0; i < genes.size(); i++){
+            catchUpWeight(i);
         }
 
     }
@@ -119,21 +301,24 @@ public class Genome implements Serializable{
      * @return Returns random Gene from the genome
      */
     public Gene randomGene(){
-        return (Gene) (genome.values().toArray()[RANDOM.nextInt(genome.size())]);
+        int index = RANDOM.nextInt(genes.size());
+        catchUpWeight(index);
+        return genes.get(index);
     }
 
     /**
      * Method to randomize ActivationFunctions in the nodeGenome
      */
     public void mutateActivation(){
-        if(network.size() <= inputSize + outputSize) return;
+        if(nodeCount <= inputSize + outputSize) return;
 
         double activationChance = ACTIVATION_MUTATION_RATE;
+        invalidate();
 
         while(activationChance > 0){
 
             if(RANDOM.nextDouble() < activationChance){
-                nodeGenome.put(RANDOM.nextInt(network.size()), Node.ActivationFunction.random());
+                nodeGenome.put(RANDOM.nextInt(nodeCount), Node.ActivationFunction.random());
             }
 
             activationChance -= 1;
@@ -149,27 +334,26 @@ public class Genome implements Serializable{
         int output = 0;
 
         do{
-            input = RANDOM.nextInt(network.size());
-        } while(network.get(input).getType() == Node.NodeType.OUTPUT);
+            input = RANDOM.nextInt(nodeCount);
+        } while(getType(input) == Node.NodeType.OUTPUT);
 
         int attempts = 0;
 
         do{
-            output = RANDOM.nextInt(network.size());
+            output = RANDOM.nextInt(nodeCount);
             attempts++;
 
             if(attempts > 100){
                 return;
             }
 
-        } while(network.get(output).getType() == Node.NodeType.INPUT
-        || checkMutation(input, output) < GLOBAL_INNOVATION_NUMBER
-        || checkMutation(output, input) < GLOBAL_INNOVATION_NUMBER);
+        } while(getType(output) == Node.NodeType.INPUT
+        || getRegistry().contains(input, output)
+        || getRegistry().contains(output, input));
 
-        Gene newGene = new Gene(input, output, GLOBAL_INNOVATION_NUMBER);
-        genome.put(GLOBAL_INNOVATION_NUMBER, newGene);
-        GLOBAL_INNOVATION_NUMBER += 1;
-        MUTATIONS.add(newGene);
+        int innovationNumber = getRegistry().register(input, output);
+        putGene(new Gene(input, output, innovationNumber));
+        invalidate();
         // System.out.println("Added link between " + input + " and " + output);
     }
 
@@ -178,36 +362,27 @@ public class Genome implements Serializable{
      */
     public void generateNode(){
 
-        if(genome.size() > 0){
-            Gene gene = (Gene) genome.values().toArray()[RANDOM.nextInt(genome.size())];
+        if(genes.size() > 0){
+            Gene gene = randomGene();
 
-            int newNode = network.size();
-            int innovationNumber1 = checkMutation(gene.getInput(), newNode);
-            int innovationNumber2 = checkMutation(newNode, gene.getOutput());
+            int newNode = nodeCount;
 
             if(!checkExistence(gene.getInput(), newNode) && !checkExistence(newNode, gene.getOutput())){
-
-                if(innovationNumber1 == GLOBAL_INNOVATION_NUMBER && innovationNumber2 == GLOBAL_INNOVATION_NUMBER){
-                    innovationNumber2 += 1;
-                }
-
-                Gene newGene1 = new Gene(gene.getInput(), newNode, 1, innovationNumber1);
-                Gene newGene2 = new Gene(newNode, gene.getOutput(), gene.getWeight(), innovationNumber2);
+                int innovationNumber1 = getRegistry().register(gene.getInput(), newNode);
+                int innovationNumber2 = getRegistry().register(newNode, gene.getOutput());
                 nodeGenome.put(newNode, Node.ActivationFunction.LINEAR);
 
-                if(innovationNumber1 == GLOBAL_INNOVATION_NUMBER){
-                    genome.put(innovationNumber1, newGene1);
-                    GLOBAL_INNOVATION_NUMBER += 1;
-                    MUTATIONS.add(newGene1);
+                // links seen before in the registry keep their innovation number but are still added
+                if(genome.get(innovationNumber1) == null){
+                    putGene(new Gene(gene.getInput(), newNode, 1, innovationNumber1));
                 }
 
-                if(innovationNumber2 == GLOBAL_INNOVATION_NUMBER){
-                    genome.put(innovationNumber2, newGene2);
-                    GLOBAL_INNOVATION_NUMBER += 1;
-                    MUTATIONS.add(newGene2);
+                if(genome.get(innovationNumber2) == null){
+                    putGene(new Gene(newNode, gene.getOutput(), gene.getWeight(), innovationNumber2));
                 }
 
                 gene.enabled = false;
+                invalidate();
                 // System.out.println("Split link between " + gene.getInput() + " and " + gene.getOutput() + " with " + newNode);
             }
 
@@ -216,22 +391,21 @@ public class Genome implements Serializable{
     }
 
     /**
-     * Checks if a historical Gene already exists linking the input and output nodes
-     * @param input The ID of the input node
-     * @param output The ID of the output node
-     * @return Returns the innovation number of the pre-existing Gene or the current GLOBAL_INNOVATION_NUMBER
+     * Get method for the InnovationRegistry numbering new links, recreating it from the genome if it was loaded from a file
+     * @return Returns the InnovationRegistry of this Genome
      */
-    public static int checkMutation(int input, int output){
+    public InnovationRegistry getRegistry(){
 
-        for(Gene gene : MUTATIONS){
+        if(registry == null){
+            registry = new InnovationRegistry();
 
-            if(gene.getInput() == input && gene.getOutput() == output){
-                return gene.getInnovationNumber();
+            for(Gene gene : genome.values()){
+                registry.record(gene);
             }
 
         }
 
-        return GLOBAL_INNOVATION_NUMBER;
+        return registry;
     }
 
     /**
@@ -241,17 +415,7 @@ public class Genome implements Serializable{
      * @return Returns whether the Gene exists or not
      */
     public boolean checkExistence(int input, int output){
-
-        for(int i = 0; i < GLOBAL_INNOVATION_NUMBER; i++){
-            Gene gene = genome.get(i);
-
-            if(gene != null && gene.getInput() == input && gene.getOutput() == output){
-                return true;
-            }
-
-        }
-
-        return false;
+        return links.contains(InnovationRegistry.key(input, output));
     }
 
     /**
@@ -262,7 +426,8 @@ public class Genome implements Serializable{
         for(int i = 0; i < inputSize; i++){
 
             for(int j = 0; j < outputSize; j++){
-                this.genome.put(i * outputSize + j, new Gene(i, j + inputSize + 1, i * outputSize + j));
+                int innovationNumber = getRegistry().register(i, j + inputSize + 1);
+                putGene(new Gene(i, j + inputSize + 1, innovationNumber));
             }
 
         }
@@ -271,54 +436,40 @@ public class Genome implements Serializable{
             nodeGenome.put(i, Node.ActivationFunction.LINEAR);
         }
 
+        invalidate();
     }
 
     /**
      * Generates the network from the genome and nodeGenome
+     *
+     * The network is rebuilt from scratch in a single pass over the genome, so it only has to be
+     * compiled once after any number of mutations.
      */
     public void compile(){
+        int innovations = 0;
+        catchUpWeights();
 
-        // input + output node generation
-        for(int i = 0; i < inputSize + 1; i++){
-            this.network.put(i, new Node(Node.NodeType.INPUT, i));
+        for(int innovationNumber : genome.keySet()){
+            innovations = Math.max(innovations, innovationNumber + 1);
         }
 
-        this.network.get(inputSize).setOutput(1);
+        network.clear();
 
-        for(int i = 0; i < outputSize; i++){
-            this.network.put(i + inputSize + 1, new Node(Node.NodeType.OUTPUT, i));
-        }
+        // input + output + hidden node generation
+        for(int i = 0; i < nodeCount; i++){
+            Node.NodeType type = getType(i);
+            network.put(i, new Node(type, type == Node.NodeType.OUTPUT ? i - inputSize - 1 : i));
 
-        // connection + hidden node generation
-        for(int i = 0; i < GLOBAL_INNOVATION_NUMBER; i++){
-            Gene gene = genome.get(i);
-
-            if(gene != null && network.get(gene.getOutput()) == null && gene.enabled){
-
-                if(nodeGenome.get(gene.getOutput()) == null){
-                    nodeGenome.put(gene.getOutput(), Node.ActivationFunction.LINEAR);
-                }
-
-                network.put(gene.getOutput(), new Node(Node.NodeType.HIDDEN, gene.getOutput()));
+            if(type == Node.NodeType.HIDDEN && nodeGenome.get(i) == null){
+                nodeGenome.put(i, Node.ActivationFunction.LINEAR);
             }
 
         }
 
-        for(int i = 0; i < GLOBAL_INNOVATION_NUMBER; i++){
-            Gene gene = genome.get(i);
-
-            if(gene != null && network.get(gene.getInput()) == null && gene.enabled){
-
-                if(nodeGenome.get(gene.getOutput()) == null){
-                    nodeGenome.put(gene.getOutput(), Node.ActivationFunction.LINEAR);
-                }
-
-                network.put(gene.getInput(), new Node(Node.NodeType.HIDDEN, gene.getInput()));
-            }
-
-        }
+        this.network.get(inputSize).setOutput(1);
 
-        for(int i = 0; i < GLOBAL_INNOVATION_NUMBER; i++){
+        // connection generation
+        for(int i = 0; i < innovations; i++){
             Gene gene = genome.get(i);
 
             if(gene != null && gene.enabled){
@@ -333,6 +484,49 @@ public class Genome implements Serializable{
             network.get(i).setActivationFunction(nodeGenome.get(i));
         }
 
+        program = new CompiledNetwork(network, inputTypes, outputSize);
+        compiled = true;
+    }
+
+    /**
+     * Get method for the compiled evaluation program, compiling it if the network changed since
+     * @return Returns the CompiledNetwork of this Genome
+     */
+    public CompiledNetwork getNetwork(){
+
+        if(program == null){
+
+            if(network.isEmpty()){
+                compile();
+            } else{
+                catchUpWeights();
+                program = new CompiledNetwork(network, inputTypes, outputSize);
+            }
+
+        }
+
+        return program;
+    }
+
+    /**
+     * Set method for an evaluation program that cannot be compiled again from the genome, such as one saved with an old Genome
+     *
+     * The program is used until the Genome is next mutated, which compiles the network from the
+     * genome again.
+     * @param program The CompiledNetwork to evaluate this Genome with
+     */
+    public void setNetwork(CompiledNetwork program){
+        network.clear();
+        this.program = program;
+        compiled = false;
+    }
+
+    /**
+     * Checks if this Genome is evaluated with a network that was not compiled from its genome
+     * @return Returns whether the network came from a Genome saved before compile() ran in a single pass
+     */
+    public boolean hasLegacyNetwork(){
+        return !compiled && (program != null || !network.isEmpty());
     }
 
     /**
@@ -342,28 +536,70 @@ public class Genome implements Serializable{
      */
     public double[] predict(double[] state){
         if(state.length != inputSize) throw new Error("Unexpected input length");
+        return getNetwork().predict(state);
+    }
 
-        for(Node node : network.values()){
-            node.reset();
-        }
+    /**
+     * Passes a batch of states through the network to obtain a batch of outputs
+     * @param inputPlanes The input values of each state indexed by InputType ordinal, planes of InputTypes the Genome does not use may be null
+     * @param outputPlanes The arrays to fill with the values of each output
+     * @param length The number of states in the batch
+     * @param planes The value planes from getNetwork().newPlanes(), reused between calls to avoid allocation
+     */
+    public void predictBatch(double[][] inputPlanes, double[][] outputPlanes, int length, double[][] planes){
+        getNetwork().predictBatch(inputPlanes, outputPlanes, length, planes);
+    }
 
-        for(int i = 0; i < inputSize; i++){
-            network.get(i).setOutput(state[i]);
-        }
+    /**
+     * Passes a batch of states through the network to obtain a batch of outputs
+     * @param inputPlanes The input values of each state indexed by InputType ordinal, planes of InputTypes the Genome does not use may be null
+     * @param outputPlanes The arrays to fill with the values of each output
+     * @param length The number of states in the batch
+     */
+    public void predictBatch(double[][] inputPlanes, double[][] outputPlanes, int length){
+        predictBatch(inputPlanes, outputPlanes, length, getNetwork().newPlanes(length));
+    }
 
-        double[] outputs = new double[outputSize];
+    /**
+     * Writes the Genome, leaving out the network when it can be compiled again from the genome
+     *
+     * Genomes saved before the network was compiled in a single pass carry the network they were
+     * rendered with, which is kept so they keep rendering the same.
+     * @param out The stream to write the Genome to
+     * @throws IOException If the Genome could not be written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        HashMap<Integer, Node> saved = network;
+        catchUpWeights();
+
+        if(compiled || network.isEmpty()){
+            network = new HashMap<Integer, Node>();
+        }
 
-        for(int i = 0; i < outputSize; i++){
-            outputs[i] = network.get(i + inputSize + 1).getOutput();
+        try{
+            out.defaultWriteObject();
+        } finally{
+            network = saved;
         }
 
-        return outputs;
+    }
+
+    /**
+     * Reads the Genome and rebuilds the indices that are not saved with it
+     * @param in The stream to read the Genome from
+     * @throws IOException If the Genome could not be read
+     * @throws ClassNotFoundException If a class of the Genome could not be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        indexGenome();
     }
 
     /**
      * Allows user to see entire genome printed out
      */
     public void printGenome(){
+        catchUpWeights();
 
         for(Gene gene : genome.values()){
             System.out.println("\nBetween: " + gene.getInput() + " -> " + gene.getOutput());
@@ -0,0 +1,264 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes Genomes in a compact, versioned binary format
+ *
+ * A file holds the magic bytes and version, the InputTypes, the output size, every Gene as its
+ * innovation number, input, output, weight and enabled flag, and the ActivationFunction of every
+ * Node. Genomes saved with Java serialization before this format existed are still read, and since
+ * their network cannot be compiled again from their genes, its evaluation program is stored in an
+ * extra section so they keep rendering the same.
+ */
+public final class GenomeFile{
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', 'P', 'N', 'N'};
+    private static final int HAS_NETWORK = 1;
+    private static final int GENE_SIZE = 21;
+    private static final int ACTIVATION_SIZE = 5;
+    private static final Genome.InputType[] INPUT_TYPES = Genome.InputType.values();
+    private static final Node.ActivationFunction[] FUNCTIONS = Node.ActivationFunction.values();
+
+    private GenomeFile(){}
+
+    /**
+     * Converts every Genome file given to the binary format, in place
+     * @param args The paths of the files to convert
+     */
+    public static void main(String[] args){
+
+        for(String arg : args){
+
+            try{
+                Path path = Paths.get(arg);
+                long before = path.toFile().length();
+                write(read(path), path);
+                System.out.println("Converted " + arg + " (" + before + " -> " + path.toFile().length() + " bytes)");
+            } catch(Exception e){
+                System.out.println("Could not convert " + arg + ": " + e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Reads a Genome from a file in either the binary format or the old Java serialization format
+     * @param path The file to read
+     * @return Returns the Genome
+     * @throws IOException If the file could not be read or is malformed
+     */
+    public static Genome read(Path path) throws IOException{
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("Genome file too large");
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+
+            buffer.flip();
+            return isSerialized(buffer) ? deserialize(buffer) : decode(buffer);
+        }
+
+    }
+
+    /**
+     * Writes a Genome to a file in the binary format, replacing the file if it exists
+     * @param genome The Genome to write
+     * @param path The file to write
+     * @throws IOException If the file could not be written
+     */
+    public static void write(Genome genome, Path path) throws IOException{
+        ByteBuffer buffer = encode(genome);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+
+        }
+
+    }
+
+    /**
+     * Encodes a Genome in the binary format
+     * @param genome The Genome to encode
+     * @return Returns a buffer holding the encoded Genome, positioned at its start
+     */
+    public static ByteBuffer encode(Genome genome){
+        List<Gene> genes = new ArrayList<Gene>(genome.getGenes());
+        genes.sort(Comparator.comparingInt(Gene::getInnovationNumber));
+
+        TreeMap<Integer, Node.ActivationFunction> activations = new TreeMap<Integer, Node.ActivationFunction>();
+
+        for(Map.Entry<Integer, Node.ActivationFunction> entry : genome.getActivations().entrySet()){
+
+            if(entry.getValue() != null){
+                activations.put(entry.getKey(), entry.getValue());
+            }
+
+        }
+
+        CompiledNetwork network = genome.hasLegacyNetwork() ? genome.getNetwork() : null;
+        Genome.InputType[] inputTypes = genome.getInputs();
+
+        int size = MAGIC.length + 2 + 1 + inputTypes.length + 4
+            + 4 + genes.size() * GENE_SIZE
+            + 4 + activations.size() * ACTIVATION_SIZE
+            + (network == null ? 0 : network.getEncodedSize());
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (network == null ? 0 : HAS_NETWORK));
+        buffer.put((byte) inputTypes.length);
+
+        for(Genome.InputType input : inputTypes){
+            buffer.put((byte) input.ordinal());
+        }
+
+        buffer.putInt(genome.getOutputSize());
+        buffer.putInt(genes.size());
+
+        for(Gene gene : genes){
+            buffer.putInt(gene.getInnovationNumber());
+            buffer.putInt(gene.getInput());
+            buffer.putInt(gene.getOutput());
+            buffer.putDouble(gene.getWeight());
+            buffer.put((byte) (gene.enabled ? 1 : 0));
+        }
+
+        buffer.putInt(activations.size());
+
+        for(Map.Entry<Integer, Node.ActivationFunction> entry : activations.entrySet()){
+            buffer.putInt(entry.getKey());
+            buffer.put((byte) entry.getValue().ordinal());
+        }
+
+        if(network != null){
+            network.encode(buffer);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a Genome in the binary format
+     * @param buffer The buffer to read from, advanced past the Genome
+     * @return Returns the Genome
+     * @throws IOException If the Genome is malformed or from a newer version
+     */
+    public static Genome decode(ByteBuffer buffer) throws IOException{
+
+        try{
+
+            for(byte b : MAGIC){
+                if(buffer.get() != b) throw new IOException("Not a genome file");
+            }
+
+            int version = buffer.get() & 0xFF;
+            if(version > VERSION) throw new IOException("Unsupported genome version " + version);
+
+            int flags = buffer.get() & 0xFF;
+            Genome.InputType[] inputTypes = new Genome.InputType[buffer.get() & 0xFF];
+
+            for(int i = 0; i < inputTypes.length; i++){
+                int ordinal = buffer.get() & 0xFF;
+                if(ordinal >= INPUT_TYPES.length) throw new IOException("Unknown input type " + ordinal);
+                inputTypes[i] = INPUT_TYPES[ordinal];
+            }
+
+            int outputSize = buffer.getInt();
+            int geneCount = buffer.getInt();
+            if(outputSize < 0 || geneCount < 0 || (long) geneCount * GENE_SIZE > buffer.remaining()) throw new IOException("Malformed genome header");
+
+            HashMap<Integer, Gene> genome = new HashMap<Integer, Gene>();
+
+            // every hidden Node is added with a Gene, so a genome never numbers past one Node per Gene
+            long nodeLimit = (long) inputTypes.length + 1 + outputSize + geneCount;
+
+            for(int i = 0; i < geneCount; i++){
+                int innovationNumber = buffer.getInt();
+                int input = buffer.getInt();
+                int output = buffer.getInt();
+                if(input < 0 || input >= nodeLimit) throw new IOException("Malformed gene " + innovationNumber + ", unknown input node " + input);
+                if(output <= inputTypes.length || output >= nodeLimit) throw new IOException("Malformed gene " + innovationNumber + ", unknown output node " + output);
+
+                Gene gene = new Gene(input, output, buffer.getDouble(), innovationNumber);
+                gene.enabled = buffer.get() != 0;
+                genome.put(innovationNumber, gene);
+            }
+
+            int activationCount = buffer.getInt();
+            if(activationCount < 0 || (long) activationCount * ACTIVATION_SIZE > buffer.remaining()) throw new IOException("Malformed activation table");
+
+            HashMap<Integer, Node.ActivationFunction> nodeGenome = new HashMap<Integer, Node.ActivationFunction>();
+
+            for(int i = 0; i < activationCount; i++){
+                int id = buffer.getInt();
+                if(id < 0 || id >= nodeLimit) throw new IOException("Malformed activation table, unknown node " + id);
+
+                int ordinal = buffer.get() & 0xFF;
+                if(ordinal >= FUNCTIONS.length) throw new IOException("Unknown activation function " + ordinal);
+                nodeGenome.put(id, FUNCTIONS[ordinal]);
+            }
+
+            Genome result = new Genome(genome, nodeGenome, inputTypes, outputSize);
+
+            if((flags & HAS_NETWORK) != 0){
+                result.setNetwork(CompiledNetwork.decode(buffer, inputTypes, outputSize));
+            }
+
+            return result;
+        } catch(BufferUnderflowException e){
+            throw new IOException("Truncated genome", e);
+        }
+
+    }
+
+    /**
+     * Checks if a buffer holds a Genome written with Java serialization
+     * @param buffer The buffer to check, which is not advanced
+     * @return Returns whether the buffer starts with the serialization stream magic
+     */
+    private static boolean isSerialized(ByteBuffer buffer){
+        return buffer.remaining() >= 2 && buffer.getShort(buffer.position()) == (short) 0xACED;
+    }
+
+    /**
+     * Reads a Genome written with Java serialization
+     * @param buffer The buffer holding the serialized Genome
+     * @return Returns the Genome
+     * @throws IOException If the Genome could not be deserialized
+     */
+    private static Genome deserialize(ByteBuffer buffer) throws IOException{
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+            return (Genome) ois.readObject();
+        } catch(ClassNotFoundException | ClassCastException e){
+            throw new IOException("Not a genome file", e);
+        }
+
+    }
+
+}
\ No newline at end of file
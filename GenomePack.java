@@ -0,0 +1,272 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * A single file holding many Genomes, each stored under a name in the GenomeFile format
+ *
+ * The file starts with a short header and is followed by records of a name and an encoded Genome,
+ * each prefixed with its length. Records are only ever appended, and a name that appears more than
+ * once refers to its last record. Opening a pack maps the whole file and builds the index by hopping
+ * from one record header to the next, so only the requested Genome is ever decoded.
+ */
+public class GenomePack{
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'C', 'P', 'N', 'P'};
+    private static final int HEADER_SIZE = 8;
+
+    private final MappedByteBuffer map;
+    private final HashMap<String, long[]> index = new HashMap<String, long[]>();
+
+    /**
+     * Constructor for the GenomePack object, which maps the pack and indexes its records
+     * @param path The pack file to open
+     * @throws IOException If the pack could not be read or is not a pack file
+     */
+    public GenomePack(Path path) throws IOException{
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("Genome packs are limited to 2 GB");
+
+            this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        checkHeader(map);
+        scan(map, map.limit(), index);
+    }
+
+    /**
+     * Converts Genome files into entries of a pack, each named after its file
+     * @param args The path of the pack followed by the Genome files to add to it
+     */
+    public static void main(String[] args){
+
+        if(args.length < 2){
+            System.out.println("Usage: java GenomePack (pack file) (genome files...)");
+            return;
+        }
+
+        try(Writer writer = new Writer(Paths.get(args[0]))){
+
+            for(int i = 1; i < args.length; i++){
+                Path path = Paths.get(args[i]);
+                String name = path.getFileName().toString().replaceAll("\\.gen$", "");
+
+                try{
+                    writer.append(name, GenomeFile.read(path));
+                    System.out.println("Packed " + name);
+                } catch(IOException e){
+                    System.out.println("Could not pack " + args[i] + ": " + e);
+                }
+
+            }
+
+        } catch(IOException e){
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * Decodes a Genome straight from the mapped pack
+     * @param name The name the Genome was stored under
+     * @return Returns the Genome
+     * @throws IOException If there is no Genome by that name or it is malformed
+     */
+    public Genome get(String name) throws IOException{
+        long[] entry = index.get(name);
+        if(entry == null) throw new IOException("No genome named " + name + " in pack");
+
+        return GenomeFile.decode(map.slice((int) entry[0], (int) entry[1]));
+    }
+
+    /**
+     * Checks if the pack holds a Genome by a name
+     * @param name The name to look up
+     * @return Returns whether a Genome is stored under the name
+     */
+    public boolean contains(String name){
+        return index.containsKey(name);
+    }
+
+    /**
+     * Get method for the names of every Genome in the pack
+     * @return Returns an unmodifiable set of names
+     */
+    public Set<String> getNames(){
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * Get method for the number of Genomes in the pack
+     * @return Returns the number of distinct names
+     */
+    public int size(){
+        return index.size();
+    }
+
+    /**
+     * Checks that a buffer starts with the pack header
+     * @param buffer The buffer holding the start of the pack
+     * @throws IOException If the header is missing or from a newer version
+     */
+    private static void checkHeader(ByteBuffer buffer) throws IOException{
+        if(buffer.limit() < HEADER_SIZE) throw new IOException("Not a genome pack");
+
+        for(int i = 0; i < MAGIC.length; i++){
+            if(buffer.get(i) != MAGIC[i]) throw new IOException("Not a genome pack");
+        }
+
+        int version = buffer.get(MAGIC.length) & 0xFF;
+        if(version > VERSION) throw new IOException("Unsupported genome pack version " + version);
+    }
+
+    /**
+     * Indexes the records of a pack, stopping at a record that was cut short
+     * @param buffer The buffer holding the pack
+     * @param size How many bytes of the buffer belong to the pack
+     * @param index The map to fill with the offset and length of each name's last record, or null
+     * @return Returns the end of the last complete record
+     */
+    private static long scan(ByteBuffer buffer, long size, HashMap<String, long[]> index){
+        long position = HEADER_SIZE;
+
+        while(position + 4 <= size){
+            int nameLength = buffer.getInt((int) position);
+            long dataStart = position + 4 + nameLength + 4;
+            if(nameLength < 0 || dataStart > size) break;
+
+            int dataLength = buffer.getInt((int) (dataStart - 4));
+            if(dataLength < 0 || dataStart + dataLength > size) break;
+
+            if(index != null){
+                byte[] name = new byte[nameLength];
+
+                for(int i = 0; i < nameLength; i++){
+                    name[i] = buffer.get((int) position + 4 + i);
+                }
+
+                index.put(new String(name, StandardCharsets.UTF_8), new long[]{dataStart, dataLength});
+            }
+
+            position = dataStart + dataLength;
+        }
+
+        return position;
+    }
+
+    /**
+     * Object that appends Genomes to a pack, safely from several threads or processes at once
+     */
+    public static class Writer implements Closeable{
+        private FileChannel channel;
+
+        /**
+         * Constructor for the Writer object, which creates the pack or cuts off a record left unfinished in it
+         * @param path The pack file to append to
+         * @throws IOException If the pack could not be opened or is not a pack file
+         */
+        public Writer(Path path) throws IOException{
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+            try{
+                FileLock lock = channel.lock();
+
+                try{
+                    long size = channel.size();
+
+                    if(size == 0){
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                        header.put(MAGIC);
+                        header.put((byte) VERSION);
+                        header.rewind();
+                        writeFully(header, 0);
+                    } else{
+                        if(size > Integer.MAX_VALUE) throw new IOException("Genome packs are limited to 2 GB");
+
+                        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        checkHeader(map);
+                        long end = scan(map, size, null);
+
+                        if(end < size){
+                            channel.truncate(end);
+                        }
+
+                    }
+
+                } finally{
+                    lock.release();
+                }
+
+            } catch(IOException e){
+                channel.close();
+                throw e;
+            }
+
+        }
+
+        /**
+         * Appends a Genome to the end of the pack
+         * @param name The name to store the Genome under
+         * @param genome The Genome to store
+         * @throws IOException If the record could not be written
+         */
+        public synchronized void append(String name, Genome genome) throws IOException{
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer data = GenomeFile.encode(genome);
+            ByteBuffer record = ByteBuffer.allocate(4 + nameBytes.length + 4 + data.remaining());
+            record.putInt(nameBytes.length);
+            record.put(nameBytes);
+            record.putInt(data.remaining());
+            record.put(data);
+            record.flip();
+
+            // the lock keeps other processes from appending between reading the size and writing
+            FileLock lock = channel.lock();
+
+            try{
+                writeFully(record, channel.size());
+            } finally{
+                lock.release();
+            }
+
+        }
+
+        /**
+         * Writes a whole buffer at a position of the pack
+         * @param buffer The buffer to write
+         * @param position The offset in the pack to write it at
+         * @throws IOException If the buffer could not be written
+         */
+        private void writeFully(ByteBuffer buffer, long position) throws IOException{
+
+            while(buffer.hasRemaining()){
+                position += channel.write(buffer, position);
+            }
+
+        }
+
+        /**
+         * Closes the pack, every appended record has already been written
+         * @throws IOException If the pack could not be closed
+         */
+        @Override
+        public void close() throws IOException{
+            channel.close();
+        }
+
+    }
+
+}
\ No newline at end of file
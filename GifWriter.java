@@ -0,0 +1,116 @@
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Object that streams frames to a looping animated GIF one at a time, so the frames never have to be held in memory together
+ *
+ * Frames go through the GIF writer of ImageIO, which reduces each one to its own 256 colour palette.
+ */
+public class GifWriter implements Closeable{
+    private ImageWriter writer;
+    private ImageOutputStream out;
+    private int delay;
+    private boolean first = true;
+
+    /**
+     * Constructor for the GifWriter object, which starts the sequence straight away
+     * @param file The file to write the GIF to, replaced if it exists
+     * @param delay How long each frame is shown, in hundredths of a second
+     * @throws IOException If the file could not be opened
+     */
+    public GifWriter(File file, int delay) throws IOException{
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if(!writers.hasNext()) throw new Error("No GIF writer available");
+
+        // the stream writes over the file in place, so a longer old file would leave its tail behind
+        Files.deleteIfExists(file.toPath());
+
+        this.writer = writers.next();
+        this.out = ImageIO.createImageOutputStream(file);
+        this.delay = delay;
+        writer.setOutput(out);
+        writer.prepareWriteSequence(null);
+    }
+
+    /**
+     * Appends a frame to the animation
+     * @param image The frame to append
+     * @throws IOException If the frame could not be written
+     */
+    public void writeFrame(BufferedImage image) throws IOException{
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = getChild(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delay));
+        control.setAttribute("transparentColorIndex", "0");
+
+        // the NETSCAPE2.0 extension on the first frame makes viewers loop forever
+        if(first){
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            getChild(root, "ApplicationExtensions").appendChild(loop);
+            first = false;
+        }
+
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), param);
+    }
+
+    /**
+     * Finds a child of a metadata node, adding it if there is none
+     * @param root The node to search
+     * @param name The name of the child
+     * @return Returns the first child with the name
+     */
+    private static IIOMetadataNode getChild(IIOMetadataNode root, String name){
+
+        for(int i = 0; i < root.getLength(); i++){
+
+            if(root.item(i).getNodeName().equals(name)){
+                return (IIOMetadataNode) root.item(i);
+            }
+
+        }
+
+        IIOMetadataNode child = new IIOMetadataNode(name);
+        root.appendChild(child);
+        return child;
+    }
+
+    /**
+     * Ends the sequence and closes the file
+     * @throws IOException If the end of the GIF could not be written
+     */
+    @Override
+    public void close() throws IOException{
+
+        try{
+            writer.endWriteSequence();
+        } finally{
+            out.close();
+            writer.dispose();
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Object that hands out innovation numbers, one for every distinct link between two Node IDs
+ *
+ * Lookups are hashed on the (input, output) pair, and the registry can be shared by Genomes built on
+ * different threads. A Genome only refuses links that already exist in its own registry, so giving
+ * every run its own registry keeps the runs independent of each other.
+ */
+public class InnovationRegistry{
+    public static final InnovationRegistry GLOBAL = new InnovationRegistry();
+
+    private final ConcurrentHashMap<Long, Integer> innovations = new ConcurrentHashMap<Long, Integer>();
+    private final AtomicInteger nextInnovation = new AtomicInteger();
+
+    /**
+     * Gets the innovation number of a link, assigning the next free one if the link is new
+     * @param input The ID of the input node
+     * @param output The ID of the output node
+     * @return Returns the innovation number of the link
+     */
+    public int register(int input, int output){
+        return innovations.computeIfAbsent(key(input, output), k -> nextInnovation.getAndIncrement());
+    }
+
+    /**
+     * Records the innovation number of an existing Gene, such as one read from a file
+     * @param gene The Gene to record
+     */
+    public void record(Gene gene){
+        innovations.putIfAbsent(key(gene.getInput(), gene.getOutput()), gene.getInnovationNumber());
+        nextInnovation.accumulateAndGet(gene.getInnovationNumber() + 1, Math::max);
+    }
+
+    /**
+     * Checks if a link has already been given an innovation number
+     * @param input The ID of the input node
+     * @param output The ID of the output node
+     * @return Returns whether the link exists in the registry
+     */
+    public boolean contains(int input, int output){
+        return innovations.containsKey(key(input, output));
+    }
+
+    /**
+     * Get method for the number of innovation numbers handed out
+     * @return Returns the next innovation number that will be assigned
+     */
+    public int size(){return nextInnovation.get();}
+
+    /**
+     * Packs a link into a single hash key
+     * @param input The ID of the input node
+     * @param output The ID of the output node
+     * @return Returns the input in the high and the output in the low 32 bits
+     */
+    static long key(int input, int output){
+        return ((long) input << 32) | (output & 0xFFFFFFFFL);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,352 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Object that renders a grid by bounding the outputs of whole regions and skipping the ones that are provably one colour
+ *
+ * The network is evaluated with interval arithmetic over the range each input takes across a region.
+ * A region is filled without evaluating its tiles when the bounds of every output lie inside the range
+ * of the evaluated tiles and both ends normalize to the same colour, and otherwise it is split into
+ * four, down to regions of MIN_REGION tiles per side whose tiles are evaluated. Evaluating tiles can
+ * widen the range, which moves the colour boundaries, so filled regions are checked again until none
+ * change. The bounds never let the range of the grid hide in a filled region, so the colours of the
+ * result are exactly those of a full render. Only exact ActivationFunctions can be bounded.
+ */
+public class IntervalRenderer{
+    public static final int MIN_REGION = 4;
+    public static final int LATTICE_STEP = 8;
+
+    private final Renderer renderer;
+    private final CompiledNetwork network;
+    private final Genome.InputType[] inputTypes;
+    private final int numTiles;
+    private final int outputSize;
+    private double[][][] vals;
+    private boolean[] evaluated;
+    private int[] rows = new int[256];
+    private int[] columns = new int[256];
+    private int queued = 0;
+    private long evaluations = 0;
+    private int filled = 0;
+    private double[] minVals;
+    private double[] maxVals;
+
+    /**
+     * Constructor for the IntervalRenderer object
+     * @param genome The Genome to evaluate
+     * @param numTiles How many tiles per side of the grid
+     */
+    public IntervalRenderer(Genome genome, int numTiles){
+        this.renderer = new Renderer(genome, numTiles, Node.Quality.EXACT);
+        this.network = genome.getNetwork().withQuality(Node.Quality.EXACT);
+        this.inputTypes = genome.getInputs();
+        this.numTiles = numTiles;
+        this.outputSize = genome.getOutputSize();
+    }
+
+    /**
+     * Fills every tile of the grid, evaluating only the regions that may hold more than one colour
+     *
+     * Tiles of filled regions hold the lower bound of their region rather than their own output, which
+     * normalizes to the same colour but makes the result unfit for the render cache.
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     * @param threads How many threads to evaluate tiles with
+     * @return Returns the raw outputs indexed [output][row][column]
+     */
+    public double[][][] render(double[] minVals, double[] maxVals, int threads){
+        vals = new double[outputSize][numTiles][numTiles];
+        evaluated = new boolean[numTiles * numTiles];
+        evaluations = 0;
+        filled = 0;
+        this.minVals = minVals.clone();
+        this.maxVals = maxVals.clone();
+
+        // an exact lattice gives the range a starting point to judge regions by
+        for(int i = 0; i < numTiles; i += LATTICE_STEP){
+
+            for(int j = 0; j < numTiles; j += LATTICE_STEP){
+                queue(i, j);
+            }
+
+        }
+
+        flush(threads);
+
+        ArrayList<Region> pending = new ArrayList<Region>();
+        ArrayList<Region> flat = new ArrayList<Region>();
+        pending.add(new Region(0, numTiles - 1, 0, numTiles - 1));
+
+        while(true){
+
+            while(!pending.isEmpty()){
+                Region region = pending.remove(pending.size() - 1);
+
+                if(isFlat(region)){
+                    flat.add(region);
+                } else if(region.i1 - region.i0 < MIN_REGION && region.j1 - region.j0 < MIN_REGION){
+                    queueRegion(region);
+                } else{
+                    split(region, pending);
+                }
+
+            }
+
+            if(queued == 0) break;
+
+            flush(threads);
+
+            // the wider range can move a colour boundary into a region that was flat
+            for(int r = flat.size() - 1; r >= 0; r--){
+
+                if(!isFlat(flat.get(r))){
+                    pending.add(flat.get(r));
+                    flat.set(r, flat.get(flat.size() - 1));
+                    flat.remove(flat.size() - 1);
+                }
+
+            }
+
+        }
+
+        for(Region region : flat){
+            fill(region);
+        }
+
+        filled = flat.size();
+        renderer.close();
+        Renderer.findRange(vals, numTiles, minVals, maxVals);
+        return vals;
+    }
+
+    /**
+     * Get method for how many tiles the last render evaluated
+     * @return Returns the number of network evaluations
+     */
+    public long getEvaluations(){return evaluations;}
+
+    /**
+     * Get method for how many regions the last render filled from their bounds
+     * @return Returns the number of filled regions
+     */
+    public int getFilledRegions(){return filled;}
+
+    /**
+     * Checks if every tile of a region is provably the same colour
+     * @param region The region to check
+     * @return Returns whether the bounds of every output lie in the range and normalize to a single colour
+     */
+    private boolean isFlat(Region region){
+
+        for(int c = 0; c < outputSize; c++){
+            double lo = region.lows[c];
+            double hi = region.highs[c];
+            if(!(lo >= minVals[c] && hi <= maxVals[c])) return false;
+            if(Renderer.toChannel(lo, minVals[c], maxVals[c]) != Renderer.toChannel(hi, minVals[c], maxVals[c])) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Splits a region into up to four halves along each side with more than one tile
+     * @param region The region to split
+     * @param regions The list to add the parts to
+     */
+    private void split(Region region, ArrayList<Region> regions){
+        int mi = (region.i0 + region.i1) / 2;
+        int mj = (region.j0 + region.j1) / 2;
+        int[] iSplits = region.i1 > region.i0 ? new int[]{region.i0, mi, mi + 1, region.i1} : new int[]{region.i0, region.i1};
+        int[] jSplits = region.j1 > region.j0 ? new int[]{region.j0, mj, mj + 1, region.j1} : new int[]{region.j0, region.j1};
+
+        for(int a = 0; a < iSplits.length; a += 2){
+
+            for(int b = 0; b < jSplits.length; b += 2){
+                regions.add(new Region(iSplits[a], iSplits[a + 1], jSplits[b], jSplits[b + 1]));
+            }
+
+        }
+
+    }
+
+    /**
+     * Fills the tiles of a flat region that were not evaluated with the lower bound of each output
+     * @param region The region to fill
+     */
+    private void fill(Region region){
+
+        for(int c = 0; c < outputSize; c++){
+
+            for(int i = region.i0; i <= region.i1; i++){
+
+                for(int j = region.j0; j <= region.j1; j++){
+
+                    if(!evaluated[i * numTiles + j]){
+                        vals[c][i][j] = region.lows[c];
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Queues every tile of a region for evaluation
+     * @param region The region to queue
+     */
+    private void queueRegion(Region region){
+
+        for(int i = region.i0; i <= region.i1; i++){
+
+            for(int j = region.j0; j <= region.j1; j++){
+                queue(i, j);
+            }
+
+        }
+
+    }
+
+    /**
+     * Queues a tile for evaluation, unless it has been evaluated or queued already
+     * @param i The row of the tile
+     * @param j The column of the tile
+     */
+    private void queue(int i, int j){
+        if(evaluated[i * numTiles + j]) return;
+
+        evaluated[i * numTiles + j] = true;
+
+        if(queued == rows.length){
+            rows = Arrays.copyOf(rows, queued * 2);
+            columns = Arrays.copyOf(columns, queued * 2);
+        }
+
+        rows[queued] = i;
+        columns[queued] = j;
+        queued++;
+    }
+
+    /**
+     * Evaluates every queued tile and widens the range of each output to cover them
+     * @param threads How many threads to evaluate tiles with
+     */
+    private void flush(int threads){
+        renderer.renderPoints(vals, rows, columns, queued, threads);
+        evaluations += queued;
+
+        for(int c = 0; c < outputSize; c++){
+
+            for(int p = 0; p < queued; p++){
+                double val = vals[c][rows[p]][columns[p]];
+
+                if(val > maxVals[c]){
+                    maxVals[c] = val;
+                }
+
+                if(val < minVals[c]){
+                    minVals[c] = val;
+                }
+
+            }
+
+        }
+
+        queued = 0;
+    }
+
+    /**
+     * Rectangle of tiles along with the bounds of every output over it
+     */
+    private class Region{
+        private final int i0;
+        private final int i1;
+        private final int j0;
+        private final int j1;
+        private final double[] lows;
+        private final double[] highs;
+
+        /**
+         * Constructor of the Region object, which bounds the outputs over the rectangle
+         * @param i0 The first row
+         * @param i1 The last row
+         * @param j0 The first column
+         * @param j1 The last column
+         */
+        public Region(int i0, int i1, int j0, int j1){
+            this.i0 = i0;
+            this.i1 = i1;
+            this.j0 = j0;
+            this.j1 = j1;
+            this.lows = new double[outputSize];
+            this.highs = new double[outputSize];
+
+            double[] slotLows = new double[network.getSlotCount()];
+            double[] slotHighs = new double[network.getSlotCount()];
+
+            for(int k = 0; k < inputTypes.length; k++){
+                double[] bounds = boundInput(inputTypes[k]);
+                slotLows[k] = bounds[0];
+                slotHighs[k] = bounds[1];
+            }
+
+            network.evaluateBounds(slotLows, slotHighs);
+
+            for(int c = 0; c < outputSize; c++){
+                lows[c] = slotLows[network.getOutputSlot(c)];
+                highs[c] = slotHighs[network.getOutputSlot(c)];
+            }
+
+        }
+
+        /**
+         * Bounds an input over the rectangle, with the same arithmetic Renderer.fillInputs() uses, and
+         * with TIME at 0 as in every render that is not part of an animation
+         * @param input The InputType to bound
+         * @return Returns the lowest and highest value, NaN if the rectangle holds the undefined THETA of the centre
+         */
+        private double[] boundInput(Genome.InputType input){
+            double x0 = 2.0 * (double) i0 / (numTiles - 1) - 1;
+            double x1 = 2.0 * (double) i1 / (numTiles - 1) - 1;
+            double y0 = 2.0 * (double) j0 / (numTiles - 1) - 1;
+            double y1 = 2.0 * (double) j1 / (numTiles - 1) - 1;
+            double ax0 = x0 <= 0 && x1 >= 0 ? 0 : Math.min(Math.abs(x0), Math.abs(x1));
+            double ax1 = Math.max(Math.abs(x0), Math.abs(x1));
+            double ay0 = y0 <= 0 && y1 >= 0 ? 0 : Math.min(Math.abs(y0), Math.abs(y1));
+            double ay1 = Math.max(Math.abs(y0), Math.abs(y1));
+
+            switch(input){
+                case X:
+                    return new double[]{x0, x1};
+                case Y:
+                    return new double[]{y0, y1};
+                case DIST:
+                    return new double[]{Math.sqrt(ax0 * ax0 + ay0 * ay0), Math.sqrt(ax1 * ax1 + ay1 * ay1)};
+                case THETA:
+                    int centre = (numTiles - 1) / 2;
+                    if((numTiles - 1) % 2 == 0 && i0 <= centre && centre <= i1 && j0 <= centre && centre <= j1) return new double[]{Double.NaN, Double.NaN};
+
+                    // y / dist grows with y, and moves away from 0 as |x| shrinks
+                    double lo = y0 / Math.sqrt((y0 >= 0 ? ax1 * ax1 : ax0 * ax0) + y0 * y0);
+                    double hi = y1 / Math.sqrt((y1 >= 0 ? ax0 * ax0 : ax1 * ax1) + y1 * y1);
+                    if(Double.isNaN(lo) || Double.isNaN(hi)) return new double[]{Double.NaN, Double.NaN};
+
+                    // the quotient is not rounded monotonically in y, so its bounds are widened slightly
+                    lo = Math.max(-1, lo - 1e-12);
+                    hi = Math.min(1, hi + 1e-12);
+                    return new double[]{Math.asin(lo) / Math.PI * 2, Math.asin(hi) / Math.PI * 2};
+                case COUNTER:
+                    return new double[]{2.0 * ((double) i0 * numTiles + j0) / numTiles / numTiles - 1, 2.0 * ((double) i1 * numTiles + j1) / numTiles / numTiles - 1};
+                case TIME:
+                    return new double[]{0, 0};
+                default:
+                    throw new Error("Unknown input type " + input);
+            }
+
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -1,24 +1,28 @@
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Dimension;
-import javax.swing.JPanel;
 import javax.swing.JFrame;
-import javax.imageio.ImageIO;
 
 import java.awt.Component;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 import java.util.Arrays;
 import java.util.Random;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 /**
  * The main class of the application
@@ -28,16 +32,46 @@ public class Main{
 	static final int DEF_RESOLUTION = 800;
 	static final int DEF_TILES = 200;
 	static final int DEF_COMPLEXITY = 100;
+	static final int DEF_THREADS = Runtime.getRuntime().availableProcessors();
+	static final int DEF_STRIP = 256;
+	static final int DEF_PNG_LEVEL = Deflater.DEFAULT_COMPRESSION;
+	static final String DEF_PACK = "genomes";
+	static final int DEF_CACHE_MB = 1024;
+	static final int SERVER_CACHE_MB = 256;
+	static final int[] PROGRESSIVE_STEPS = {4, 2, 1};
+	static final int GIF_DELAY = 4;
 	static JFrame frame = null;
 
 	static int resolution = DEF_RESOLUTION;
 	static int numTiles = DEF_TILES;
 	static int complexity = DEF_COMPLEXITY;
+	static int threads = DEF_THREADS;
+	static Node.Quality quality = Node.Quality.EXACT;
 	static boolean animate = false;
 	static boolean minimized = false;
 	static boolean save = false;
+	static boolean stream = false;
+	static boolean progressive = false;
+	static volatile boolean aborted = false;
+	static int stripRows = DEF_STRIP;
+	static int sampleStep = 0;
+	static double tolerance = 0;
+	static boolean interval = false;
+	static int frames = 0;
+	static boolean gif = false;
+	static int pngLevel = DEF_PNG_LEVEL;
 	static String fileName = "pattern";
 	static String loadFile = null;
+	static String packName = null;
+	static GenomePack pack = null;
+	static GenomePack.Writer packWriter = null;
+	static boolean useCache = false;
+	static int cacheMegabytes = DEF_CACHE_MB;
+	static RenderCache cache = null;
+	static boolean batch = false;
+	static boolean profile = false;
+	static int serverPort = 0;
+	static int[] batchIndices = {};
 
 	// credit to stackoverflow for providing code
 	/**
@@ -63,6 +97,25 @@ public class Main{
 			parseString((String) obj);
 		});
 
+		// serves renders over HTTP until the process is killed if user requested to do so
+		if(serverPort > 0){
+
+			try{
+				startServer();
+			} catch(IOException e){
+				e.printStackTrace();
+				System.exit(0);
+			}
+
+			return;
+		}
+
+		// generates or enhances a whole range of patterns in this process if user requested to do so
+		if(batch){
+			runBatch();
+			System.exit(0);
+		}
+
         if (animate) {
             frame = new JFrame("Canvas");
 
@@ -77,73 +130,84 @@ public class Main{
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         }
 
-		Genome genome = createGenome();
-
-		// gets all outputs from genome network and finds min/max values
-		double maxValR = -Double.MAX_VALUE;
-		double minValR = Double.MAX_VALUE;
-
-		double maxValG = -Double.MAX_VALUE;
-		double minValG = Double.MAX_VALUE;
-
-		double maxValB = -Double.MAX_VALUE;
-		double minValB = Double.MAX_VALUE;
-
-		double[][][] vals = new double[numTiles][numTiles][3];
-		double rawCounter = 0;
-
-		Genome.InputType[] inputTypes = genome.getInputs();
+		Genome genome = null;
+		RenderMetrics metrics = new RenderMetrics(fileName, numTiles, threads);
+
+		try{
+			metrics.begin(RenderMetrics.Phase.CREATE_GENOME);
+			genome = createGenome(loadFile);
+			metrics.setGenome(genome);
+			metrics.end();
+		} catch(Exception e){
+			e.printStackTrace();
+			System.out.println("\nExiting to avoid possible overwrite...");
+			System.exit(0);
+		}
 
-		for(int i = 0; i < numTiles; i++){
+		// renders every frame of an animation to file if user requested to do so
+		if(frames > 0){
 
-			for(int j = 0; j < numTiles; j++){
-				double x = 2.0 * (double) i / (numTiles - 1) - 1;
-				double y = 2.0 * (double) j / (numTiles - 1) - 1;
-				double dist = Math.sqrt(x * x + y * y);
-				double theta = Math.asin(y / dist) / Math.PI * 2;
-				double counter = 2.0 * rawCounter / numTiles / numTiles - 1;
-				double[] state = order(x, y, dist, theta, counter, inputTypes);
-				vals[i][j] = genome.predict(state);
-				
-				if(vals[i][j][0] > maxValR){
-					maxValR = vals[i][j][0];
-				} else if(vals[i][j][0] < minValR){
-					minValR = vals[i][j][0];
-				}
+			try{
+				metrics.begin(RenderMetrics.Phase.RENDER);
+				renderAnimation(genome, fileName, loadFile, threads);
+				metrics.finish();
+			} catch(Exception e){
+				e.printStackTrace();
+			}
 
-				if(vals[i][j][1] > maxValG){
-					maxValG = vals[i][j][1];
-				} else if(vals[i][j][1] < minValG){
-					minValG = vals[i][j][1];
-				}
+			System.exit(0);
+		}
 
-				if(vals[i][j][2] > maxValB){
-					maxValB = vals[i][j][2];
-				} else if(vals[i][j][2] < minValB){
-					minValB = vals[i][j][2];
-				}
+		// renders straight to file in strips if user requested to do so
+		if(stream){
 
-				rawCounter++;
+			try{
+				metrics.begin(RenderMetrics.Phase.RENDER);
+				renderStream(genome, fileName, loadFile, threads);
+				metrics.finish();
+			} catch(Exception e){
+				e.printStackTrace();
 			}
 
+			System.exit(0);
 		}
 
-		// pushes raw values to range [0-254]
-		int[][][] colorVals = new int[numTiles][numTiles][3];
-
-		for(int i = 0; i < numTiles; i++){
+		// refines a coarse preview in place if user requested to do so
+		if(progressive){
 
-			for(int j = 0; j < numTiles; j++){
-				colorVals[i][j][0] = minMax(0, 254, (int) (254.0 * (vals[i][j][0] - minValR) / (maxValR - minValR)));
-				colorVals[i][j][1] = minMax(0, 254, (int) (254.0 * (vals[i][j][1] - minValG) / (maxValG - minValG)));
-				colorVals[i][j][2] = minMax(0, 254, (int) (254.0 * (vals[i][j][2] - minValB) / (maxValB - minValB)));
+			try{
+				metrics.begin(RenderMetrics.Phase.RENDER);
+				renderProgressive(genome, fileName, loadFile, threads);
+				metrics.finish();
+			} catch(Exception e){
+				e.printStackTrace();
 			}
 
+			if(minimized || aborted) System.exit(0);
+			return;
+		}
+
+		// gets all outputs from genome network and finds min/max values
+		double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+
+		double[][][] vals = null;
+
+		try{
+			NodeProfiler profiler = profile ? new NodeProfiler(genome.getNetwork()) : null;
+			vals = renderGrid(genome, threads, minVals, maxVals, metrics, profiler);
+			metrics.end();
+			if(profiler != null) writeProfile(profiler, fileName);
+		} catch(IOException e){
+			e.printStackTrace();
+			System.exit(0);
 		}
 
         if (animate) {
-            // graphically shows neural network outputs
-            frame.add(new JCanvas(resolution, numTiles, colorVals));
+            // graphically shows neural network outputs, which can then be explored
+            Explorer explorer = new Explorer(genome, resolution, numTiles, quality, threads);
+            explorer.showGrid(toImage(vals, minVals, maxVals), minVals, maxVals);
+            frame.add(explorer);
             frame.validate();
             frame.setVisible(true);
         }
@@ -151,36 +215,29 @@ public class Main{
 		// saves genome and image if user requested to do so
 		if(save || !fileName.equals("pattern")){
 			BufferedImage img = null;
+			metrics.begin(RenderMetrics.Phase.FILL_IMAGE);
 
             if (animate) {
                 img = getScreenShot(frame.getContentPane());
             } else {
-                img = new BufferedImage(numTiles, numTiles, BufferedImage.TYPE_INT_RGB);
-
-                for (int i = 0; i < numTiles; i++) {
-                    for (int j = 0; j < numTiles; j++) {
-                        int[] color = colorVals[i][j];
-                        int rgb = (color[0] << 0) + (color[1] << 8) + (color[2] << 16);
-                        img.setRGB(j, i, rgb);
-                    }
-                }
+                img = toImage(vals, minVals, maxVals);
             }
 
 			try{
-				ImageIO.write(img, "png", new File("patterns/" + fileName + ".png"));
-
-				if(loadFile == null){
-					ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("patterns/" + fileName + ".gen"));
-					oos.writeObject(genome);
-					oos.close();
-				}
-
+				writePng(img, fileName, threads, metrics);
+				saveGenome(genome, fileName, loadFile);
 			} catch(Exception e){
 				e.printStackTrace();
 			}
 
 		}
 
+		try{
+			metrics.finish();
+		} catch(IOException e){
+			e.printStackTrace();
+		}
+
 		// exits if user does not want window to pop up at any time
 		if(minimized){
 			System.exit(0);
@@ -188,6 +245,532 @@ public class Main{
 
 	}
 
+	/**
+	 * Renders every frame of an animation and writes them as numbered PNGs, or as one animated GIF if GIF is set
+	 *
+	 * The range of each output is shared by every frame so colours do not jump between them, so a
+	 * first pass over the frames finds it and a second pass colours and writes them, without ever
+	 * holding more than one frame.
+	 * @param genome The Genome to render
+	 * @param fileName The name to save the frames and Genome under
+	 * @param loadFile The name the Genome was loaded from, or null if it was generated
+	 * @param threads How many threads to render and compress with
+	 * @throws IOException If a frame or the Genome could not be written
+	 */
+	private static void renderAnimation(Genome genome, String fileName, String loadFile, int threads) throws IOException{
+
+		if(!Arrays.asList(genome.getInputs()).contains(Genome.InputType.TIME)){
+			System.out.println("Genome has no TIME input, every frame will be the same");
+		}
+
+		long startTime = System.nanoTime();
+
+		try(Animator animator = new Animator(genome, numTiles, quality, frames)){
+			animator.prepare(threads);
+			double[][][] vals = new double[3][numTiles][numTiles];
+
+			double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+
+			for(int f = 0; f < frames; f++){
+				animator.renderFrame(vals, f, threads);
+				Renderer.findRange(vals, numTiles, minVals, maxVals);
+			}
+
+			if(gif){
+
+				try(GifWriter gifWriter = new GifWriter(new File("patterns/" + fileName + ".gif"), GIF_DELAY)){
+
+					for(int f = 0; f < frames; f++){
+						animator.renderFrame(vals, f, threads);
+						gifWriter.writeFrame(toImage(vals, minVals, maxVals));
+					}
+
+				}
+
+			} else{
+
+				for(int f = 0; f < frames; f++){
+					animator.renderFrame(vals, f, threads);
+					PngWriter.write(toImage(vals, minVals, maxVals), new File(String.format("patterns/%s_%04d.png", fileName, f)), pngLevel, threads);
+				}
+
+			}
+
+		}
+
+		saveGenome(genome, fileName, loadFile);
+		System.out.printf("Rendered %d frames in %.2f s%n", frames, (System.nanoTime() - startTime) / 1e9);
+	}
+
+	/**
+	 * Renders the pattern in strips of rows and streams them to a PNG file, so memory does not grow with the image
+	 *
+	 * A first pass finds the range of each output, either exactly over every tile or from a coarser
+	 * lattice if SAMPLE is set, and a second pass colours and writes the rows.
+	 * @param genome The Genome to render
+	 * @param fileName The name to save the pattern and Genome under
+	 * @param loadFile The name the Genome was loaded from, or null if it was generated
+	 * @param threads How many threads to render and compress with
+	 * @throws IOException If the pattern or Genome could not be written
+	 */
+	private static void renderStream(Genome genome, String fileName, String loadFile, int threads) throws IOException{
+		try(Renderer renderer = new Renderer(genome, numTiles, quality)){
+			int rows = Math.max(1, Math.min(stripRows, numTiles));
+			double[][][] strip = new double[3][rows][numTiles];
+
+			double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+
+			// starts from a cached coarser grid, but the strips are not cached since they are never held together
+			if(useCache){
+				double[][][] known = openCache().loadCoarser(RenderCache.key(genome, quality), genome.getInputs(), numTiles, minVals, maxVals);
+
+				if(known != null){
+					renderer.setKnown(known, (numTiles - 1) / (known[0].length - 1));
+				}
+
+			}
+
+			if(sampleStep > 0){
+				renderer.sampleRange(sampleStep, minVals, maxVals);
+			} else{
+
+				for(int start = 0; start < numTiles; start += rows){
+					int end = Math.min(start + rows, numTiles);
+					renderer.renderRows(strip, start, end, threads);
+					Renderer.findRange(strip, end - start, minVals, maxVals);
+				}
+
+			}
+
+			int[] row = new int[numTiles];
+
+			try(PngWriter png = new PngWriter(new BufferedOutputStream(new FileOutputStream("patterns/" + fileName + ".png")), numTiles, numTiles, pngLevel, threads)){
+
+				for(int start = 0; start < numTiles; start += rows){
+					int end = Math.min(start + rows, numTiles);
+					renderer.renderRows(strip, start, end, threads);
+
+					for(int i = 0; i < end - start; i++){
+
+						for(int j = 0; j < numTiles; j++){
+							row[j] = colorize(strip, i, j, minVals, maxVals);
+						}
+
+						png.writeRow(row, 0);
+					}
+
+				}
+
+				saveGenome(genome, fileName, loadFile);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Renders the pattern in passes of increasing density, showing and saving a preview after each one
+	 *
+	 * The first pass evaluates one tile in every 4x4 block and each later pass only evaluates the tiles
+	 * its lattice adds, so the last pass ends with the same outputs and image as a normal render.
+	 * Tiles that are not evaluated yet take the colour of the evaluated tile above and left of them.
+	 * Pressing Escape in the window stops after the current pass and deletes the partial pattern.
+	 * @param genome The Genome to render
+	 * @param fileName The name to save the pattern and Genome under
+	 * @param loadFile The name the Genome was loaded from, or null if it was generated
+	 * @param threads How many threads to render and compress with
+	 * @throws IOException If the pattern or Genome could not be written
+	 */
+	private static void renderProgressive(Genome genome, String fileName, String loadFile, int threads) throws IOException{
+		try(Renderer renderer = new Renderer(genome, numTiles, quality)){
+			double[][][] vals = new double[3][numTiles][numTiles];
+			Explorer explorer = null;
+			File file = new File("patterns/" + fileName + ".png");
+			boolean saving = save || !fileName.equals("pattern");
+
+			double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+
+			if(animate){
+				explorer = new Explorer(genome, resolution, numTiles, quality, threads);
+				frame.add(explorer);
+				frame.addKeyListener(new KeyAdapter(){
+
+					@Override
+					public void keyPressed(KeyEvent e){
+						if(e.getKeyCode() == KeyEvent.VK_ESCAPE) aborted = true;
+					}
+
+				});
+				frame.validate();
+			}
+
+			int previousStep = 0;
+
+			for(int step : PROGRESSIVE_STEPS){
+				if(aborted) break;
+
+				long startTime = System.nanoTime();
+				renderer.renderPass(vals, step, previousStep, threads);
+				Renderer.findLatticeRange(vals, step, minVals, maxVals);
+				BufferedImage img = toPreview(vals, step, minVals, maxVals);
+				System.out.printf("Rendered pass at step %d in %.3f s%n", step, (System.nanoTime() - startTime) / 1e9);
+
+				if(animate){
+					explorer.showGrid(img, minVals, maxVals);
+				}
+
+				if(saving){
+					PngWriter.write(animate && step == 1 ? getScreenShot(frame.getContentPane()) : img, file, pngLevel, threads);
+				}
+
+				previousStep = step;
+			}
+
+			if(aborted){
+				System.out.println("Aborted, discarding partial pattern");
+				if(saving) file.delete();
+				return;
+			}
+
+			if(saving){
+				saveGenome(genome, fileName, loadFile);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Colours a grid of which only a lattice has been evaluated, each tile taking the colour of its nearest lattice tile above and left of it
+	 * @param vals The raw outputs indexed [output][row][column]
+	 * @param step The distance between evaluated tiles in both directions
+	 * @param minVals The minimum of each output
+	 * @param maxVals The maximum of each output
+	 * @return Returns a TYPE_INT_RGB image with one pixel per tile
+	 */
+	private static BufferedImage toPreview(double[][][] vals, int step, double[] minVals, double[] maxVals){
+		if(step == 1) return toImage(vals, minVals, maxVals);
+
+		int size = vals[0].length;
+		BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+
+		for(int i = 0; i < size; i++){
+
+			for(int j = 0; j < size; j++){
+				pixels[i * size + j] = j % step == 0 ? colorize(vals, i - i % step, j, minVals, maxVals) : pixels[i * size + j - j % step];
+			}
+
+		}
+
+		return img;
+	}
+
+	/**
+	 * Saves the Genome next to its pattern, unless it was loaded from a file
+	 * @param genome The Genome to save
+	 * @param fileName The name to save the Genome under
+	 * @param loadFile The name the Genome was loaded from, or null if it was generated
+	 * @throws IOException If the Genome could not be written
+	 */
+	private static void saveGenome(Genome genome, String fileName, String loadFile) throws IOException{
+
+		if(loadFile == null && packName != null){
+			openPackWriter().append(fileName, genome);
+		} else if(loadFile == null){
+			GenomeFile.write(genome, Paths.get("patterns/" + fileName + ".gen"));
+		}
+
+	}
+
+	/**
+	 * Renders the raw outputs of the whole grid, adaptively if ADAPTIVE is set, by regions if INTERVAL is set or through the render cache if CACHE is set
+	 *
+	 * Adaptive and interval renders do not hold the raw output of every tile, so they are never cached.
+	 * Those and cached renders find the range as they go, so all of their time is timed as evaluation.
+	 * Profiled renders bypass ADAPTIVE, INTERVAL and CACHE and profile the normal Renderer path,
+	 * symmetric rows and hoisted X-only and Y-only Nodes included.
+	 * @param genome The Genome to render
+	 * @param threads How many threads to render with
+	 * @param minVals The running minimum of each output, updated in place
+	 * @param maxVals The running maximum of each output, updated in place
+	 * @param metrics The metrics of the render, left timing the last phase
+	 * @param profiler The NodeProfiler to record every evaluated Node in, or null to render without one
+	 * @return Returns the raw outputs indexed [output][row][column]
+	 * @throws IOException If the render cache could not be read or written
+	 */
+	static double[][][] renderGrid(Genome genome, int threads, double[] minVals, double[] maxVals, RenderMetrics metrics, NodeProfiler profiler) throws IOException{
+		metrics.begin(RenderMetrics.Phase.EVALUATE);
+
+		if(profiler != null){
+
+			try(Renderer renderer = new Renderer(genome, numTiles, quality)){
+				renderer.setProfiler(profiler);
+				double[][][] vals = renderer.render(threads);
+				metrics.begin(RenderMetrics.Phase.NORMALIZE);
+				Renderer.findRange(vals, numTiles, minVals, maxVals);
+				return vals;
+			}
+
+		}
+
+		if(tolerance > 0){
+			AdaptiveSampler sampler = new AdaptiveSampler(genome, numTiles, quality, tolerance);
+			double[][][] vals = sampler.render(minVals, maxVals, threads);
+			long tiles = (long) numTiles * numTiles;
+			System.out.printf("Evaluated %d of %d tiles (%.1fx fewer)%n", sampler.getEvaluations(), tiles, (double) tiles / sampler.getEvaluations());
+			return vals;
+		}
+
+		if(interval && quality == Node.Quality.EXACT){
+			IntervalRenderer renderer = new IntervalRenderer(genome, numTiles);
+			double[][][] vals = renderer.render(minVals, maxVals, threads);
+			long tiles = (long) numTiles * numTiles;
+			System.out.printf("Evaluated %d of %d tiles, filled %d regions from bounds%n", renderer.getEvaluations(), tiles, renderer.getFilledRegions());
+			return vals;
+		} else if(interval){
+			System.out.println("INTERVAL needs exact quality, rendering every tile");
+		}
+
+		if(useCache){
+			return openCache().render(genome, numTiles, quality, threads, minVals, maxVals);
+		}
+
+		double[][][] vals;
+
+		try(Renderer renderer = new Renderer(genome, numTiles, quality)){
+			vals = renderer.render(threads);
+		}
+
+		metrics.begin(RenderMetrics.Phase.NORMALIZE);
+		Renderer.findRange(vals, numTiles, minVals, maxVals);
+		return vals;
+	}
+
+	/**
+	 * Opens the render cache the first time it is needed
+	 * @return Returns the RenderCache shared by every pattern
+	 * @throws IOException If the cache directory could not be created
+	 */
+	private static synchronized RenderCache openCache() throws IOException{
+
+		if(cache == null){
+			cache = new RenderCache(Paths.get("patterns/cache"), (long) cacheMegabytes << 20);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Opens the pack named by PACK for reading the first time it is needed
+	 * @return Returns the GenomePack shared by every pattern
+	 * @throws IOException If the pack could not be opened
+	 */
+	private static synchronized GenomePack openPack() throws IOException{
+
+		if(pack == null){
+			pack = new GenomePack(Paths.get("patterns/" + (packName == null ? DEF_PACK : packName) + ".pack"));
+		}
+
+		return pack;
+	}
+
+	/**
+	 * Opens the pack named by PACK for appending the first time it is needed
+	 * @return Returns the GenomePack.Writer shared by every pattern
+	 * @throws IOException If the pack could not be opened
+	 */
+	private static synchronized GenomePack.Writer openPackWriter() throws IOException{
+
+		if(packWriter == null){
+			packWriter = new GenomePack.Writer(Paths.get("patterns/" + packName + ".pack"));
+		}
+
+		return packWriter;
+	}
+
+	/**
+	 * Colours the raw outputs of a whole grid straight into the backing array of an image
+	 * @param vals The raw outputs indexed [output][row][column]
+	 * @param minVals The minimum of each output
+	 * @param maxVals The maximum of each output
+	 * @return Returns a TYPE_INT_RGB image with one pixel per tile
+	 */
+	static BufferedImage toImage(double[][][] vals, double[] minVals, double[] maxVals){
+		int size = vals[0].length;
+		BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+
+		for(int i = 0; i < size; i++){
+
+			for(int j = 0; j < size; j++){
+				pixels[i * size + j] = colorize(vals, i, j, minVals, maxVals);
+			}
+
+		}
+
+		return img;
+	}
+
+	/**
+	 * Starts the HTTP render server on the SERVER port, rendering with the THREADS, TILES, QUALITY and PNG_LEVEL options
+	 *
+	 * The server runs on its own threads, so this returns as soon as it is listening.
+	 * @throws IOException If the port could not be bound or the pack could not be opened
+	 */
+	private static void startServer() throws IOException{
+		GenomePack serverPack = packName == null ? null : openPack();
+		RenderServer server = new RenderServer(serverPort, threads, (long) SERVER_CACHE_MB << 20, Paths.get("patterns"), serverPack, numTiles, quality, pngLevel);
+		server.start();
+		System.out.println("Serving renders on http://localhost:" + server.getPort() + "/render");
+	}
+
+	/**
+	 * Generates or enhances every pattern of the BATCH range in this process, spread over a pool of workers
+	 *
+	 * Every {i} in FILE and LOAD is replaced by the index of the pattern, and FILE defaults to {i}.
+	 * Patterns are saved as if SAVE were set, and a pattern that fails is reported and skipped.
+	 */
+	private static void runBatch(){
+		String filePattern = fileName.equals("pattern") ? "{i}" : fileName;
+		if(!filePattern.contains("{i}")) filePattern += "{i}";
+
+		int count = batchIndices.length;
+		int workers = Math.max(1, Math.min(threads, count));
+		int jobThreads = Math.max(1, threads / count);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		ArrayList<Future<String>> jobs = new ArrayList<Future<String>>();
+		long startTime = System.nanoTime();
+
+		for(int index : batchIndices){
+			String name = filePattern.replace("{i}", Integer.toString(index));
+			String load = loadFile == null ? null : loadFile.replace("{i}", Integer.toString(index));
+			jobs.add(pool.submit(() -> {
+				renderPattern(name, load, jobThreads);
+				return name;
+			}));
+		}
+
+		int failed = 0;
+
+		for(Future<String> job : jobs){
+
+			try{
+				System.out.println("Saved " + job.get());
+			} catch(ExecutionException e){
+				e.getCause().printStackTrace();
+				failed++;
+			} catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				break;
+			}
+
+		}
+
+		pool.shutdown();
+
+		// reports aggregate throughput of the whole batch
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		int saved = count - failed;
+		System.out.printf("Saved %d of %d patterns in %.2f s with %d workers%n", saved, count, seconds, workers);
+		System.out.printf("%.2f patterns/s, %.2f megapixels/s%n", saved / seconds, (double) saved * numTiles * numTiles / seconds / 1e6);
+	}
+
+	/**
+	 * Creates, renders and saves a single pattern without touching the window
+	 * @param fileName The name to save the pattern and Genome under
+	 * @param loadFile The name to load the Genome from, or null to generate one
+	 * @param threads How many threads to render and compress with
+	 * @throws Exception If the Genome could not be loaded or the pattern could not be written
+	 */
+	private static void renderPattern(String fileName, String loadFile, int threads) throws Exception{
+		RenderMetrics metrics = new RenderMetrics(fileName, numTiles, threads);
+		metrics.begin(RenderMetrics.Phase.CREATE_GENOME);
+		Genome genome = createGenome(loadFile);
+		metrics.setGenome(genome);
+
+		if(frames > 0 || stream){
+			metrics.begin(RenderMetrics.Phase.RENDER);
+
+			if(frames > 0){
+				renderAnimation(genome, fileName, loadFile, threads);
+			} else{
+				renderStream(genome, fileName, loadFile, threads);
+			}
+
+			metrics.finish();
+			return;
+		}
+
+		double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+
+		NodeProfiler profiler = profile ? new NodeProfiler(genome.getNetwork()) : null;
+		double[][][] vals = renderGrid(genome, threads, minVals, maxVals, metrics, profiler);
+		metrics.end();
+		if(profiler != null) writeProfile(profiler, fileName);
+
+		metrics.begin(RenderMetrics.Phase.FILL_IMAGE);
+		BufferedImage img = toImage(vals, minVals, maxVals);
+		writePng(img, fileName, threads, metrics);
+		saveGenome(genome, fileName, loadFile);
+		metrics.finish();
+	}
+
+	/**
+	 * Writes the profile of a render next to its pattern and prints the cost of each ActivationFunction
+	 * @param profiler The NodeProfiler the render recorded into
+	 * @param fileName The name the pattern is saved under
+	 * @throws IOException If the profile could not be written
+	 */
+	private static void writeProfile(NodeProfiler profiler, String fileName) throws IOException{
+		profiler.write(Paths.get("patterns/" + fileName + "_profile.txt"), Paths.get("patterns/" + fileName + "_profile.dot"));
+		System.out.print("Profile of " + fileName + "\n" + profiler.formatFunctions());
+	}
+
+	/**
+	 * Encodes a pattern in memory and then writes it to its file, so encoding and I/O are timed apart
+	 * @param img The image of the pattern
+	 * @param fileName The name to save the pattern under
+	 * @param threads How many threads to compress with
+	 * @param metrics The metrics of the render, left timing the IO phase
+	 * @throws IOException If the PNG could not be written
+	 */
+	private static void writePng(BufferedImage img, String fileName, int threads, RenderMetrics metrics) throws IOException{
+		metrics.begin(RenderMetrics.Phase.ENCODE);
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		PngWriter.write(img, png, pngLevel, threads);
+
+		metrics.begin(RenderMetrics.Phase.IO);
+
+		try(FileOutputStream out = new FileOutputStream("patterns/" + fileName + ".png")){
+			png.writeTo(out);
+		}
+
+	}
+
+	/**
+	 * Normalizes the raw outputs of a tile and packs them into an RGB int
+	 * @param vals The raw outputs indexed [output][row][column]
+	 * @param i The row of the tile in vals
+	 * @param j The column of the tile
+	 * @param minVals The minimum of each output
+	 * @param maxVals The maximum of each output
+	 * @return Returns the packed colour, with the first output in the lowest byte
+	 */
+	private static int colorize(double[][][] vals, int i, int j, double[] minVals, double[] maxVals){
+		int rgb = 0;
+
+		for(int c = 0; c < 3; c++){
+			rgb += Renderer.toChannel(vals[c][i][j], minVals[c], maxVals[c]) << (8 * c);
+		}
+
+		return rgb;
+	}
+
 	/**
 	 * Prints all user arguments
 	 */
@@ -197,81 +780,85 @@ public class Main{
 		System.out.println("RES: How much pixel resolution per side (int)");
 		System.out.println("TILES: How many tiles per side (int)");
 		System.out.println("CMPLX: Network complexity (int)");
+		System.out.println("THREADS: How many threads to render with (int)");
+		System.out.println("QUALITY: Exact or fast approximate activation functions (exact/fast)");
 		System.out.println("ANIM: If rendering should be animated (true/false)");
 		System.out.println("MIN: If window should never pop up (true/false)");
 		System.out.println("SAVE: If the pattern should be saved to file (true/false)");
+		System.out.println("STREAM: If the pattern should be rendered straight to file in strips (true/false)");
+		System.out.println("PROGRESSIVE: If a coarse preview should be shown and saved first and refined in passes, Escape aborts (true/false)");
+		System.out.println("STRIP: How many rows per strip when streaming (int)");
+		System.out.println("SAMPLE: Estimate the range from every SAMPLE-th tile when streaming, 0 for exact (int)");
+		System.out.println("ADAPTIVE: Interpolate cells whose corners differ by at most this fraction of the range, 0 to evaluate every tile (double)");
+		System.out.println("INTERVAL: Skip regions whose outputs are bounded to a single colour, exact quality only (true/false)");
+		System.out.println("FRAMES: Render an animation of this many frames with a TIME input instead of one pattern, 0 for none (int)");
+		System.out.println("GIF: If animation frames should be written to one animated GIF instead of numbered PNGs (true/false)");
+		System.out.println("CACHE: If raw outputs should be cached and reused by renders of the same or a (n-1)*k+1 sized grid (true/false)");
+		System.out.println("CACHE_MB: How many megabytes the render cache may hold (int)");
+		System.out.println("PNG_LEVEL: PNG compression level from 0 to 9, -1 for the default (int)");
+		System.out.println("SERVER: Serve PNG renders of saved or posted networks on this local port, 0 for none (int)");
+		System.out.println("METRICS: File to append a JSON line of phase timings per rendered pattern to (string)");
+		System.out.println("PROFILE: If evaluation cost per node should be written to (FILE)_profile.txt and (FILE)_profile.dot, still patterns only (true/false)");
+		System.out.println("BATCH: Generate or enhance patterns in one process, as a..b, a..b..step or a comma list of those, {i} in FILE and LOAD is the index (range)");
 		System.out.println("FILE: Screenshot and network file names (string)");
-		System.out.println("LOAD: Load network file name without extension (string)");
+		System.out.println("LOAD: Load network file name without extension, or pack:(name) to load from the pack (string)");
+		System.out.println("PACK: Pack file name without extension to append new networks to and load pack: names from (string)");
 	}
 
 	/**
 	 * Creates the genome to be used to generate a pattern, either loading it or creating one
+	 * @param loadFile The name to load the Genome from, or null to generate one
 	 * @return Returns a Genome
+	 * @throws Exception If the Genome could not be loaded
 	 */
-	private static Genome createGenome(){
+	private static Genome createGenome(String loadFile) throws Exception{
 		Genome genome = null;
 
 		// attempts to load Genome from user file
-		if(loadFile != null){
-
-			try{
-				ObjectInputStream ois = new ObjectInputStream(new FileInputStream("patterns/" + loadFile + ".gen"));
-				genome = (Genome) ois.readObject();
-				System.out.println("Loaded genome");
-				ois.close();
-			} catch(Exception e){
-				e.printStackTrace();
-				System.out.println("\nExiting to avoid possible overwrite...");
-				System.exit(0);
-			}
-
+		if(loadFile != null && loadFile.startsWith("pack:")){
+			genome = openPack().get(loadFile.substring(5));
+			System.out.println("Loaded genome");
+		} else if(loadFile != null){
+			genome = GenomeFile.read(Paths.get("patterns/" + loadFile + ".gen"));
+			System.out.println("Loaded genome");
 		}
 
 		// creates new Genome and randomly mutates it according to user's complexity argument
 		if(genome == null){
-			genome = new Genome(randomInputs(), 3, false);
-			genome.compile();
-			
-			for(int i = 0; i < complexity; i++){
-
-				if(Math.random() >= 0.5){
-					genome.generateLink();
-				} else{
-					genome.generateNode();
-				}
-
-				genome.mutateWeights();
-				genome.mutateActivation();
-
-				genome.compile();
-			}
-
+			genome = generateGenome();
 		}
 
 		return genome;
 	}
 
 	/**
-	 * Pushes value to within a range
-	 * @param min Minimum value of range
-	 * @param max Maximum value of range
-	 * @param val Actual value
-	 * @return Returns an integer between min and max
+	 * Generates a new Genome and randomly mutates it according to user's complexity argument
+	 *
+	 * Every Genome gets its own InnovationRegistry, so patterns of a batch are generated exactly as
+	 * they would be in separate processes and can be generated concurrently.
+	 * @return Returns a Genome
 	 */
-	private static int minMax(int min, int max, int val){
+	private static Genome generateGenome(){
+		Genome genome = new Genome(randomInputs(), 3, false, new InnovationRegistry());
+
+		for(int i = 0; i < complexity; i++){
 
-		if(val < min){
-			return min;
-		} else if(val > max){
-			return max;
-		} else{
-			return val;
+			if(Math.random() >= 0.5){
+				genome.generateLink();
+			} else{
+				genome.generateNode();
+			}
+
+			genome.mutateWeights();
+			genome.mutateActivation();
 		}
 
+		genome.compile();
+		return genome;
 	}
 
 	/**
-	 * Creates random list of inputs for Genome object
+	 * Creates random list of inputs for Genome object, always with TIME when animating
 	 * @return Returns array of InputType enumerations
 	 */
 	private static Genome.InputType[] randomInputs(){
@@ -283,45 +870,61 @@ public class Main{
 			set.add(Genome.InputType.random());
 		}
 
+		if(frames > 0){
+			set.add(Genome.InputType.TIME);
+		}
+
 		return set.toArray(inputTypes);
 	}
 
 	/**
-	 * Creates a state according to the InputType array of the Genome
-	 * @param x The x coordinate of the square between -1 and 1
-	 * @param y The y coordinate of the square between -1 and 1
-	 * @param dist The distance of the coordinate to the origin (0, 0)
-	 * @param theta The angle of the coordinate relative to the origin (0, 0), divided by PI such that the value is between -1 and 1
-	 * @param counter A counter that goes from -1 to 1 over the course of iterating over the entire grid
-	 * @param inputs The InputType array of the current Genome
-	 * @return Returns an array of doubles containing all the inputs to the Genome network
+	 * Reads the indices of a batch the way bash expands a brace expression
+	 *
+	 * The range is a comma list of single indices, a..b ranges and a..b..step ranges, optionally in
+	 * braces, where a range counts down when b is below a. Indices are kept in order and only the
+	 * first of any repeats is kept, so no two workers write the same pattern.
+	 * @param range The range without BATCH=
+	 * @return Returns the indices of the batch
+	 * @throws NumberFormatException If the range could not be read
 	 */
-	private static double[] order(double x, double y, double dist, double theta, double counter, Genome.InputType[] inputs){
-		double[] state = new double[inputs.length];
-
-		for(int i = 0; i < inputs.length; i++){
-			
-			switch(inputs[i]){
-				case X:
-					state[i] = x;
-					break;
-				case Y:
-					state[i] = y;
-					break;
-				case DIST:
-					state[i] = dist;
-					break;
-				case THETA:
-					state[i] = theta;
-					break;
-				case COUNTER:
-					state[i] = counter;
-					break;
+	private static int[] parseBatch(String range){
+		if(range.startsWith("{") && range.endsWith("}")) range = range.substring(1, range.length() - 1);
+
+		LinkedHashSet<Integer> indices = new LinkedHashSet<Integer>();
+
+		for(String part : range.split(",", -1)){
+			String[] bounds = part.trim().split("\\.\\.", -1);
+			if(bounds.length > 3) throw new NumberFormatException("Too many .. in " + part);
+
+			int start = Integer.parseInt(bounds[0].trim());
+			int end = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : start;
+			int step = bounds.length > 2 ? Math.abs(Integer.parseInt(bounds[2].trim())) : 1;
+			if(step == 0) throw new NumberFormatException("Step of 0 in " + part);
+
+			if(end >= start){
+
+				for(long index = start; index <= end; index += step){
+					indices.add((int) index);
+				}
+
+			} else{
+
+				for(long index = start; index >= end; index -= step){
+					indices.add((int) index);
+				}
+
 			}
 
 		}
 
-		return state;
+		int[] result = new int[indices.size()];
+		int k = 0;
+
+		for(int index : indices){
+			result[k++] = index;
+		}
+
+		return result;
 	}
 
 	/**
@@ -359,6 +962,24 @@ public class Main{
 					complexity = DEF_COMPLEXITY;
 				}
 
+			} else if(str.contains("THREADS=")){
+
+				try{
+					threads = Integer.parseInt(str.substring(8, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read THREADS");
+					threads = DEF_THREADS;
+				}
+
+			} else if(str.contains("QUALITY=")){
+
+				try{
+					quality = Node.Quality.valueOf(str.substring(8, str.length()).toUpperCase());
+				} catch(Exception e){
+					System.out.println("Could not read QUALITY");
+					quality = Node.Quality.EXACT;
+				}
+
 			} else if(str.contains("ANIM=")){
 				
 				try{
@@ -386,6 +1007,156 @@ public class Main{
 					save = false;
 				}
 
+			} else if(str.contains("STREAM=")){
+
+				try{
+					stream = Boolean.parseBoolean(str.substring(7, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read STREAM");
+					stream = false;
+				}
+
+			} else if(str.contains("PROGRESSIVE=")){
+
+				try{
+					progressive = Boolean.parseBoolean(str.substring(12, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read PROGRESSIVE");
+					progressive = false;
+				}
+
+			} else if(str.contains("STRIP=")){
+
+				try{
+					stripRows = Integer.parseInt(str.substring(6, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read STRIP");
+					stripRows = DEF_STRIP;
+				}
+
+			} else if(str.contains("SAMPLE=")){
+
+				try{
+					sampleStep = Integer.parseInt(str.substring(7, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read SAMPLE");
+					sampleStep = 0;
+				}
+
+			} else if(str.contains("ADAPTIVE=")){
+
+				try{
+					tolerance = Double.parseDouble(str.substring(9, str.length()));
+					if(tolerance < 0) throw new Exception();
+				} catch(Exception e){
+					System.out.println("Could not read ADAPTIVE");
+					tolerance = 0;
+				}
+
+			} else if(str.contains("INTERVAL=")){
+
+				try{
+					interval = Boolean.parseBoolean(str.substring(9, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read INTERVAL");
+					interval = false;
+				}
+
+			} else if(str.contains("FRAMES=")){
+
+				try{
+					frames = Integer.parseInt(str.substring(7, str.length()));
+					if(frames < 0) throw new Exception();
+				} catch(Exception e){
+					System.out.println("Could not read FRAMES");
+					frames = 0;
+				}
+
+			} else if(str.contains("GIF=")){
+
+				try{
+					gif = Boolean.parseBoolean(str.substring(4, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read GIF");
+					gif = false;
+				}
+
+			} else if(str.contains("CACHE=")){
+
+				try{
+					useCache = Boolean.parseBoolean(str.substring(6, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read CACHE");
+					useCache = false;
+				}
+
+			} else if(str.contains("CACHE_MB=")){
+
+				try{
+					cacheMegabytes = Integer.parseInt(str.substring(9, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read CACHE_MB");
+					cacheMegabytes = DEF_CACHE_MB;
+				}
+
+			} else if(str.contains("PNG_LEVEL=")){
+
+				try{
+					pngLevel = Integer.parseInt(str.substring(10, str.length()));
+					if(pngLevel < -1 || pngLevel > 9) throw new Exception();
+				} catch(Exception e){
+					System.out.println("Could not read PNG_LEVEL");
+					pngLevel = DEF_PNG_LEVEL;
+				}
+
+			} else if(str.contains("BATCH=")){
+
+				// a batch that cannot be read must not fall through to rendering a single pattern named {i}
+				try{
+					batchIndices = parseBatch(str.substring(6, str.length()));
+					batch = true;
+				} catch(Exception e){
+					System.out.println("Could not read BATCH");
+					System.exit(1);
+				}
+
+			} else if(str.contains("SERVER=")){
+
+				try{
+					serverPort = Integer.parseInt(str.substring(7, str.length()));
+					if(serverPort < 0 || serverPort > 65535) throw new Exception();
+				} catch(Exception e){
+					System.out.println("Could not read SERVER");
+					serverPort = 0;
+				}
+
+			} else if(str.contains("METRICS=")){
+
+				try{
+					RenderMetrics.setOutput(Paths.get(str.substring(8, str.length())));
+				} catch(Exception e){
+					System.out.println("Could not read METRICS");
+					RenderMetrics.setOutput(null);
+				}
+
+			} else if(str.contains("PROFILE=")){
+
+				try{
+					profile = Boolean.parseBoolean(str.substring(8, str.length()));
+				} catch(Exception e){
+					System.out.println("Could not read PROFILE");
+					profile = false;
+				}
+
+			} else if(str.contains("PACK=")){
+
+				try{
+					packName = str.substring(5, str.length());
+				} catch(Exception e){
+					System.out.println("Could not read PACK");
+					packName = null;
+				}
+
 			} else if(str.contains("FILE=")){
 
 				try{
@@ -408,48 +1179,4 @@ public class Main{
 
 	}
 	
-}
-
-/**
- * JPanel object extended to take a matrix of RGB values to paint onto the component
- */
-class JCanvas extends JPanel{
-	public static final long serialVersionUID = 10483782;
-	private int resolution;
-	private int numTiles;
-	private int[][][] colorVals;
-
-	/**
-	 * Constructor of the JCanvas object
-	 * @param resolution How many pixels per side of the component
-	 * @param numTiles How many tiles to render per side of the component
-	 * @param colorVals The RGB integer matrix to render
-	 */
-	public JCanvas(int resolution, int numTiles, int[][][] colorVals){
-		this.resolution = resolution;
-		this.numTiles = numTiles;
-		this.colorVals = colorVals;
-		setPreferredSize(new Dimension(resolution, resolution));
-	}
-
-	/**
-	 * Overridden paint method to allow RGB matrix to be rendered instead
-	 * @param gr The Graphics object of the JCanvas
-	 */
-	@Override
-	public void paint(Graphics gr){
-		Graphics2D g2 = (Graphics2D) gr;
-		int size = resolution / numTiles;
-
-		for(int i = 0; i < numTiles; i++){
-
-			for(int j = 0; j < numTiles; j++){
-				g2.setColor(new Color(colorVals[i][j][0], colorVals[i][j][1], colorVals[i][j][2]));
-				g2.fillRect(i * size, j * size, size, size);
-			}
-
-		}
-
-	}
-	
 }
\ No newline at end of file
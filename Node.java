@@ -1,10 +1,10 @@
-import java.util.function.Function;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Object that contains information of a single Node in the neural network
@@ -13,42 +13,454 @@ public class Node implements Serializable{
     public static final long serialVersionUID = Long.parseLong("52120201111");
 
     public static enum ActivationFunction{
-        GAUSSIAN(Node::gaussian),
-        SINE(Node::sine),
-        COSINE(Node::cosine),
-        TANH(Node::tanh),
-        SIGMOID(Node::sigmoid),
-        BOUNDED_LINEAR(Node::boundedLinear),
-        RELU(Node::relu),
-        MODULUS(Node::modulus),
-        ABSOLUTE_VALUE(Node::absoluteValue),
-        INVERSE_ABSOLUTE_VALUE(Node::inverseAbsoluteValue),
-        LINEAR(Node::linear),
-        INVERSE(Node::inverse),
-        PARABOLIC(Node::parabolic),
-        CUBIC(Node::cubic),
-        LOG(Node::log),
-        EXPONENTIAL(Node::exponential),
-        ALTERNATING_FLOOR(Node::alternatingFloor);
+        GAUSSIAN,
+        SINE,
+        COSINE,
+        TANH,
+        SIGMOID,
+        BOUNDED_LINEAR,
+        RELU,
+        MODULUS,
+        ABSOLUTE_VALUE,
+        INVERSE_ABSOLUTE_VALUE,
+        LINEAR,
+        INVERSE,
+        PARABOLIC,
+        CUBIC,
+        LOG,
+        EXPONENTIAL,
+        ALTERNATING_FLOOR;
 
         private static final Random RANDOM = new Random();
         private static final List<ActivationFunction> VALUES = Arrays.asList(ActivationFunction.values());
         private static final int SIZE = VALUES.size();
+        private static final double[] ZERO = {0};
+        private static final double[] NONE = {};
+
+        /**
+         * Invokes the function on a single value
+         * @param x The input to the function
+         * @return Returns the output of the function
+         */
+        public double invoke(double x){
 
-        private Function<Double, Double> func;
+            switch(this){
+                case GAUSSIAN:
+                    return gaussian(x);
+                case SINE:
+                    return sine(x);
+                case COSINE:
+                    return cosine(x);
+                case TANH:
+                    return tanh(x);
+                case SIGMOID:
+                    return sigmoid(x);
+                case BOUNDED_LINEAR:
+                    return boundedLinear(x);
+                case RELU:
+                    return relu(x);
+                case MODULUS:
+                    return modulus(x);
+                case ABSOLUTE_VALUE:
+                    return absoluteValue(x);
+                case INVERSE_ABSOLUTE_VALUE:
+                    return inverseAbsoluteValue(x);
+                case LINEAR:
+                    return linear(x);
+                case INVERSE:
+                    return inverse(x);
+                case PARABOLIC:
+                    return parabolic(x);
+                case CUBIC:
+                    return cubic(x);
+                case LOG:
+                    return log(x);
+                case EXPONENTIAL:
+                    return exponential(x);
+                case ALTERNATING_FLOOR:
+                    return alternatingFloor(x);
+                default:
+                    throw new Error("Unknown activation function " + this);
+            }
 
-        ActivationFunction(Function<Double, Double> func){
-            this.func = func;
         }
 
-        public double invoke(double x){
-            return func.apply(x);
+        /**
+         * Invokes the function in place on the first length values of an array
+         * @param values The inputs to the function, replaced by its outputs
+         * @param length How many values to invoke the function on
+         */
+        public void invoke(double[] values, int length){
+
+            switch(this){
+                case GAUSSIAN:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = gaussian(values[p]);
+                    }
+
+                    break;
+                case SINE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = sine(values[p]);
+                    }
+
+                    break;
+                case COSINE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = cosine(values[p]);
+                    }
+
+                    break;
+                case TANH:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = tanh(values[p]);
+                    }
+
+                    break;
+                case SIGMOID:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = sigmoid(values[p]);
+                    }
+
+                    break;
+                case BOUNDED_LINEAR:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = boundedLinear(values[p]);
+                    }
+
+                    break;
+                case RELU:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = relu(values[p]);
+                    }
+
+                    break;
+                case MODULUS:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = modulus(values[p]);
+                    }
+
+                    break;
+                case ABSOLUTE_VALUE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = absoluteValue(values[p]);
+                    }
+
+                    break;
+                case INVERSE_ABSOLUTE_VALUE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = inverseAbsoluteValue(values[p]);
+                    }
+
+                    break;
+                case LINEAR:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = linear(values[p]);
+                    }
+
+                    break;
+                case INVERSE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = inverse(values[p]);
+                    }
+
+                    break;
+                case PARABOLIC:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = parabolic(values[p]);
+                    }
+
+                    break;
+                case CUBIC:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = cubic(values[p]);
+                    }
+
+                    break;
+                case LOG:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = log(values[p]);
+                    }
+
+                    break;
+                case EXPONENTIAL:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = exponential(values[p]);
+                    }
+
+                    break;
+                case ALTERNATING_FLOOR:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = alternatingFloor(values[p]);
+                    }
+
+                    break;
+                default:
+                    throw new Error("Unknown activation function " + this);
+            }
+
+        }
+
+        /**
+         * Invokes the fast approximation of the function on a single value
+         *
+         * Functions built on transcendental library calls use the FastMath approximations, every
+         * other function is exact.
+         * @param x The input to the function
+         * @return Returns the approximate output of the function
+         */
+        public double invokeFast(double x){
+
+            switch(this){
+                case GAUSSIAN:
+                    return fastGaussian(x);
+                case SINE:
+                    return fastSine(x);
+                case COSINE:
+                    return fastCosine(x);
+                case TANH:
+                    return fastTanh(x);
+                case SIGMOID:
+                    return fastSigmoid(x);
+                case PARABOLIC:
+                    return fastParabolic(x);
+                case CUBIC:
+                    return fastCubic(x);
+                case EXPONENTIAL:
+                    return fastExponential(x);
+                default:
+                    return invoke(x);
+            }
+
+        }
+
+        /**
+         * Bounds the outputs of the function over an interval of inputs, the interval extension of the function
+         *
+         * Every function is monotonic between known break points, and Java's math functions keep the
+         * monotonicity of the functions they approximate, so the outputs at the ends of the interval
+         * and on either side of each break inside it bound the exact outputs for every input between.
+         * @param lo The lowest input
+         * @param hi The highest input
+         * @return Returns the lowest and highest output, NaN if they could not be bounded
+         */
+        public double[] bound(double lo, double hi){
+            if(!(lo <= hi)) return new double[]{Double.NaN, Double.NaN};
+
+            switch(this){
+                case GAUSSIAN:
+                case ABSOLUTE_VALUE:
+                case INVERSE_ABSOLUTE_VALUE:
+                case INVERSE:
+                case LOG:
+                    return boundPieces(lo, hi, this::invoke, ZERO);
+                case SINE:
+                    return boundWave(lo, hi, 0.25);
+                case COSINE:
+                    return boundWave(lo, hi, 0);
+                case TANH:
+                case SIGMOID:
+                case BOUNDED_LINEAR:
+                case RELU:
+                case LINEAR:
+                    return boundPieces(lo, hi, this::invoke, NONE);
+                case MODULUS:
+                    return hi - lo > 2 ? new double[]{-1, 1} : boundPieces(lo, hi, this::invoke, multiples(lo, hi, 1));
+                case PARABOLIC:
+                    return hi - lo > 2 ? new double[]{0, 1} : boundPieces(lo, hi, this::invoke, multiples(lo, hi, 1));
+                case ALTERNATING_FLOOR:
+                    return hi - lo > 2 ? new double[]{-1, 1} : boundPieces(lo, hi, this::invoke, multiples(lo, hi, 1));
+                case CUBIC:
+                case EXPONENTIAL:
+                    // both wrap (x + 1) % 2.0, whose breaks fall on exact even values of the rounded x + 1
+                    double tLo = lo + 1;
+                    double tHi = hi + 1;
+                    if(tHi - tLo > 4) return this == CUBIC ? new double[]{-27, 1} : new double[]{1.0 / 16, 1};
+
+                    DoubleUnaryOperator wrapped = this == CUBIC ? t -> Math.pow(t % 2.0 - 1, 3) : t -> Math.pow(2, t % 2.0 - 2);
+                    return boundPieces(tLo, tHi, wrapped, multiples(tLo, tHi, 2));
+                default:
+                    throw new Error("Unknown activation function " + this);
+            }
+
+        }
+
+        /**
+         * Bounds SINE or COSINE, which turn near the points of every half period that cannot be represented exactly
+         * @param lo The lowest input
+         * @param hi The highest input
+         * @param peak The input of the first maximum, the minimum follows half a period later
+         * @return Returns the lowest and highest output
+         */
+        private double[] boundWave(double lo, double hi, double peak){
+            if(hi - lo >= 1 || Math.abs(lo) > 1e6 || Math.abs(hi) > 1e6) return new double[]{-1, 1};
+
+            double[] bounds = boundPieces(lo, hi, this::invoke, NONE);
+            double margin = 1e-9 * Math.max(1, Math.max(Math.abs(lo), Math.abs(hi)));
+
+            if(Math.ceil(lo - margin - peak) + peak <= hi + margin){
+                bounds[1] = 1;
+            }
+
+            if(Math.ceil(lo - margin - peak - 0.5) + peak + 0.5 <= hi + margin){
+                bounds[0] = -1;
+            }
+
+            return bounds;
+        }
+
+        /**
+         * Bounds a function that is monotonic between break points, by its outputs at the ends and on either side of each break
+         * @param lo The lowest input
+         * @param hi The highest input
+         * @param func The function to bound
+         * @param breaks The inputs the function may turn or jump at
+         * @return Returns the lowest and highest output
+         */
+        private static double[] boundPieces(double lo, double hi, DoubleUnaryOperator func, double[] breaks){
+            double first = func.applyAsDouble(lo);
+            double last = func.applyAsDouble(hi);
+            double[] bounds = {Math.min(first, last), Math.max(first, last)};
+
+            for(double point : breaks){
+
+                for(double x : new double[]{Math.nextDown(point), point, Math.nextUp(point)}){
+
+                    if(x >= lo && x <= hi){
+                        double val = func.applyAsDouble(x);
+                        bounds[0] = Math.min(bounds[0], val);
+                        bounds[1] = Math.max(bounds[1], val);
+                    }
+
+                }
+
+            }
+
+            return bounds;
+        }
+
+        /**
+         * Lists the multiples of a spacing near an interval
+         * @param lo The lowest input
+         * @param hi The highest input
+         * @param spacing The distance between multiples
+         * @return Returns every multiple from the last one below lo to the first one above hi
+         */
+        private static double[] multiples(double lo, double hi, double spacing){
+            double start = Math.floor(lo / spacing) * spacing;
+            double[] points = new double[(int) ((Math.ceil(hi / spacing) * spacing - start) / spacing) + 1];
+
+            for(int k = 0; k < points.length; k++){
+                points[k] = start + k * spacing;
+            }
+
+            return points;
+        }
+
+        /**
+         * Invokes the fast approximation of the function in place on the first length values of an array
+         * @param values The inputs to the function, replaced by its approximate outputs
+         * @param length How many values to invoke the function on
+         */
+        public void invokeFast(double[] values, int length){
+
+            switch(this){
+                case GAUSSIAN:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastGaussian(values[p]);
+                    }
+
+                    break;
+                case SINE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastSine(values[p]);
+                    }
+
+                    break;
+                case COSINE:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastCosine(values[p]);
+                    }
+
+                    break;
+                case TANH:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastTanh(values[p]);
+                    }
+
+                    break;
+                case SIGMOID:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastSigmoid(values[p]);
+                    }
+
+                    break;
+                case PARABOLIC:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastParabolic(values[p]);
+                    }
+
+                    break;
+                case CUBIC:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastCubic(values[p]);
+                    }
+
+                    break;
+                case EXPONENTIAL:
+
+                    for(int p = 0; p < length; p++){
+                        values[p] = fastExponential(values[p]);
+                    }
+
+                    break;
+                default:
+                    invoke(values, length);
+            }
+
         }
 
         public static ActivationFunction random(){
             return VALUES.get(RANDOM.nextInt(SIZE));
         }
 
+        /**
+         * Reseeds the source random() draws from
+         * @param seed The new seed
+         */
+        public static void setSeed(long seed){
+            RANDOM.setSeed(seed);
+        }
+
+    }
+
+    public enum Quality{
+        EXACT,
+        FAST
     }
 
     public enum NodeType{
@@ -57,6 +469,9 @@ public class Node implements Serializable{
         OUTPUT
     }
 
+    private static final double GAUSSIAN_SCALE = 1.0 / (0.4 * Math.sqrt(2.0 * Math.PI));
+    private static final double GAUSSIAN_EXPONENT = -1.0 / (2.0 * 0.4 * 0.4);
+
     private NodeType type;
     private ActivationFunction func = ActivationFunction.LINEAR;
     private LinkedHashMap<Node, Gene> outputs = new LinkedHashMap<Node, Gene>();
@@ -172,6 +587,18 @@ public class Node implements Serializable{
      */
     public void setActivationFunction(ActivationFunction func){this.func = func;}
 
+    /**
+     * Get method to get the Node's ActivationFunction
+     * @return Returns the ActivationFunction invoked by this Node
+     */
+    public ActivationFunction getActivationFunction(){return func;}
+
+    /**
+     * Get method to get the Node's input Nodes
+     * @return Returns the list of Nodes summed by this Node, in order
+     */
+    public List<Node> getInputs(){return inputs;}
+
     /**
      * Get method to get the Node's NodeType
      * @return Returns the NodeType specifying this Node's purpose
@@ -361,4 +788,78 @@ public class Node implements Serializable{
         return Math.floor(x) % 2.0;
     }
 
+    /**
+     * Approximate normal distribution function (0, 0.9974]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastGaussian(double x){
+        return GAUSSIAN_SCALE * FastMath.exp(x * x * GAUSSIAN_EXPONENT);
+    }
+
+    /**
+     * Approximate sine function [-1, 1]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastSine(double x){
+        return FastMath.sinTurns(x);
+    }
+
+    /**
+     * Approximate cosine function [-1, 1]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastCosine(double x){
+        return FastMath.cosTurns(x);
+    }
+
+    /**
+     * Approximate sigmoid function [-1, 1]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastSigmoid(double x){
+        return 2.0 / (1.0 + FastMath.exp(-x)) - 1.0;
+    }
+
+    /**
+     * Approximate hyperbolic tangent function (-1, 1)
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastTanh(double x){
+        return FastMath.tanh(x * Math.PI);
+    }
+
+    /**
+     * Modified parabolic function without Math.pow [0, 1]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastParabolic(double x){
+        double fraction = Math.abs(x) % 1.0;
+        return fraction * fraction;
+    }
+
+    /**
+     * Modified cubic function without Math.pow [-1, 1]
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastCubic(double x){
+        double wrapped = (x + 1) % 2.0 - 1;
+        return wrapped * wrapped * wrapped;
+    }
+
+    /**
+     * Approximate modified exponential function [1/4, 1)
+     * @param x The input to the function
+     * @return Returns the output of the function
+     */
+    private static double fastExponential(double x){
+        return FastMath.exp2((x + 1) % 2.0 - 2);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts how often every Node of a CompiledNetwork is evaluated during a render and samples how long each one takes
+ *
+ * Renderer hands the Counters of each of its threads to CompiledNetwork.predictRow(), which counts the
+ * states every Node is evaluated for and times each Node on one row in SAMPLE_PERIOD. The cost of a
+ * Node is estimated as its sampled time per state times every state it was evaluated for, so Nodes
+ * that are evaluated once per row or kept between rows are charged for what they actually cost. The
+ * time of a Node includes summing its links, so Nodes with a large fan-in cost more whatever their
+ * ActivationFunction. Results are reported per Node with its depth, fan-in and fan-out, per
+ * ActivationFunction, and as a DOT graph with every Node shaded by its share of the cost.
+ */
+public class NodeProfiler{
+    public static final int SAMPLE_PERIOD = 8;
+
+    private final CompiledNetwork network;
+    private final List<Counters> allCounters = new ArrayList<Counters>();
+    private final ThreadLocal<Counters> threadCounters = ThreadLocal.withInitial(this::newCounters);
+
+    /**
+     * Constructor for the NodeProfiler object
+     * @param network The network being rendered
+     */
+    public NodeProfiler(CompiledNetwork network){
+        this.network = network;
+    }
+
+    /**
+     * Get method for the Counters of the calling thread, which only that thread may record into
+     * @return Returns the Counters of the calling thread, created the first time it asks
+     */
+    public Counters getCounters(){
+        return threadCounters.get();
+    }
+
+    /**
+     * Creates the Counters of a thread and keeps them to be added up
+     * @return Returns the new Counters
+     */
+    private synchronized Counters newCounters(){
+        Counters counters = new Counters(network.getNodeCount());
+        allCounters.add(counters);
+        return counters;
+    }
+
+    /**
+     * Adds up the Counters of every thread, which must have finished rendering
+     * @return Returns the totals
+     */
+    private synchronized Counters total(){
+        Counters total = new Counters(network.getNodeCount());
+
+        for(Counters counters : allCounters){
+            total.rows += counters.rows;
+
+            for(int k = 0; k < total.states.length; k++){
+                total.states[k] += counters.states[k];
+                total.calls[k] += counters.calls[k];
+                total.sampledStates[k] += counters.sampledStates[k];
+                total.sampledNanos[k] += counters.sampledNanos[k];
+            }
+
+        }
+
+        return total;
+    }
+
+    /**
+     * Estimates the time every Node took over the whole render
+     * @param total The Counters of every thread added up
+     * @return Returns the estimated nanoseconds of each Node in evaluation order
+     */
+    private static double[] estimate(Counters total){
+        double[] nanos = new double[total.states.length];
+
+        for(int k = 0; k < nanos.length; k++){
+
+            if(total.sampledStates[k] > 0){
+                nanos[k] = (double) total.sampledNanos[k] * total.states[k] / total.sampledStates[k];
+            }
+
+        }
+
+        return nanos;
+    }
+
+    /**
+     * Finds how many Nodes lie on the longest path from an input to every Node
+     * @return Returns the depth of each Node in evaluation order, 1 for Nodes fed only by inputs
+     */
+    private int[] findDepths(){
+        int base = network.getInputSize() + 1;
+        int[] depths = new int[network.getNodeCount()];
+
+        // sources always come earlier in evaluation order
+        for(int k = 0; k < depths.length; k++){
+            int depth = 0;
+
+            for(int i = 0; i < network.getFanIn(k); i++){
+                int source = network.getSourceSlot(k, i);
+                if(source >= base) depth = Math.max(depth, depths[source - base]);
+            }
+
+            depths[k] = depth + 1;
+        }
+
+        return depths;
+    }
+
+    /**
+     * Counts the links out of every Node
+     * @return Returns the fan-out of each Node in evaluation order
+     */
+    private int[] findFanOuts(){
+        int base = network.getInputSize() + 1;
+        int[] fanOuts = new int[network.getNodeCount()];
+
+        for(int k = 0; k < fanOuts.length; k++){
+
+            for(int i = 0; i < network.getFanIn(k); i++){
+                int source = network.getSourceSlot(k, i);
+                if(source >= base) fanOuts[source - base]++;
+            }
+
+        }
+
+        return fanOuts;
+    }
+
+    /**
+     * Formats the coordinates a Node depends on
+     * @param k The index of the Node in evaluation order
+     * @return Returns X, Y and T for each coordinate, or - for none
+     */
+    private String formatDependencies(int k){
+        int dependencies = network.getDependencies(k);
+        String text = ((dependencies & CompiledNetwork.DEPENDS_ON_X) != 0 ? "X" : "")
+            + ((dependencies & CompiledNetwork.DEPENDS_ON_Y) != 0 ? "Y" : "")
+            + ((dependencies & CompiledNetwork.DEPENDS_ON_TIME) != 0 ? "T" : "");
+        return text.isEmpty() ? "-" : text;
+    }
+
+    /**
+     * Formats the cost of every ActivationFunction used by the network, most expensive first
+     * @return Returns the table as text
+     */
+    public String formatFunctions(){
+        Counters total = total();
+        double[] nanos = estimate(total);
+        double sum = Arrays.stream(nanos).sum();
+        int functionCount = Node.ActivationFunction.values().length;
+        int[] nodes = new int[functionCount];
+        long[] states = new long[functionCount];
+        long[] sampledStates = new long[functionCount];
+        long[] sampledNanos = new long[functionCount];
+        double[] functionNanos = new double[functionCount];
+
+        for(int k = 0; k < nanos.length; k++){
+            int f = network.getActivationFunction(k).ordinal();
+            nodes[f]++;
+            states[f] += total.states[k];
+            sampledStates[f] += total.sampledStates[k];
+            sampledNanos[f] += total.sampledNanos[k];
+            functionNanos[f] += nanos[k];
+        }
+
+        Integer[] sorted = new Integer[functionCount];
+
+        for(int f = 0; f < functionCount; f++){
+            sorted[f] = f;
+        }
+
+        Arrays.sort(sorted, Comparator.comparingDouble(f -> -functionNanos[f]));
+
+        StringBuilder text = new StringBuilder(String.format("%-22s %7s %14s %10s %12s %8s%n", "Function", "nodes", "states", "ns/state", "est. ms", "share"));
+
+        for(int f : sorted){
+            if(nodes[f] == 0) continue;
+
+            text.append(String.format("%-22s %7d %14d %10.1f %12.3f %7.2f%%%n", Node.ActivationFunction.values()[f], nodes[f], states[f],
+                sampledStates[f] == 0 ? 0 : (double) sampledNanos[f] / sampledStates[f], functionNanos[f] / 1e6, sum == 0 ? 0 : 100 * functionNanos[f] / sum));
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Formats the cost of every Node with its place in the network, most expensive first
+     * @return Returns the table as text
+     */
+    public String formatNodes(){
+        Counters total = total();
+        double[] nanos = estimate(total);
+        double sum = Arrays.stream(nanos).sum();
+        int[] depths = findDepths();
+        int[] fanOuts = findFanOuts();
+        Integer[] sorted = new Integer[nanos.length];
+
+        for(int k = 0; k < sorted.length; k++){
+            sorted[k] = k;
+        }
+
+        Arrays.sort(sorted, Comparator.comparingDouble(k -> -nanos[k]));
+
+        StringBuilder text = new StringBuilder(String.format("%6s %6s %-22s %5s %5s %6s %4s %14s %10s %10s %12s %8s%n",
+            "order", "id", "function", "depth", "fanIn", "fanOut", "deps", "states", "calls", "ns/state", "est. ms", "share"));
+
+        for(int k : sorted){
+            text.append(String.format("%6d %6d %-22s %5d %5d %6d %4s %14d %10d %10.1f %12.3f %7.2f%%%n", k, network.getNodeID(k), network.getActivationFunction(k),
+                depths[k], network.getFanIn(k), fanOuts[k], formatDependencies(k), total.states[k], total.calls[k],
+                total.sampledStates[k] == 0 ? 0 : (double) total.sampledNanos[k] / total.sampledStates[k], nanos[k] / 1e6, sum == 0 ? 0 : 100 * nanos[k] / sum));
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Formats the network as a DOT graph, with every Node labelled and shaded red by its share of the cost
+     * @return Returns the graph in the DOT language
+     */
+    public String formatDot(){
+        Counters total = total();
+        double[] nanos = estimate(total);
+        double sum = Arrays.stream(nanos).sum();
+        double max = Arrays.stream(nanos).max().orElse(0);
+        int inputSize = network.getInputSize();
+        int base = inputSize + 1;
+        boolean[] outputs = new boolean[network.getSlotCount()];
+
+        for(int i = 0; i < network.getOutputSize(); i++){
+            outputs[network.getOutputSlot(i)] = true;
+        }
+
+        StringBuilder dot = new StringBuilder("digraph profile {\n");
+        dot.append("    rankdir=LR;\n");
+        dot.append("    node [style=filled, fillcolor=white, fontname=\"Helvetica\"];\n");
+
+        for(int i = 0; i < inputSize; i++){
+            dot.append(String.format("    s%d [shape=box, label=\"%s\"];%n", i, network.getInputType(i)));
+        }
+
+        dot.append(String.format("    s%d [shape=box, label=\"BIAS\"];%n", inputSize));
+
+        for(int k = 0; k < nanos.length; k++){
+            double share = sum == 0 ? 0 : nanos[k] / sum;
+            dot.append(String.format("    s%d [label=\"%d %s\\n%.2f%%\", fillcolor=\"0.000 %.3f 1.000\"%s];%n", base + k, network.getNodeID(k),
+                network.getActivationFunction(k), 100 * share, max == 0 ? 0 : nanos[k] / max, outputs[base + k] ? ", peripheries=2" : ""));
+        }
+
+        for(int k = 0; k < nanos.length; k++){
+
+            for(int i = 0; i < network.getFanIn(k); i++){
+                dot.append(String.format("    s%d -> s%d;%n", network.getSourceSlot(k, i), base + k));
+            }
+
+        }
+
+        dot.append("}\n");
+        return dot.toString();
+    }
+
+    /**
+     * Writes the tables of ActivationFunctions and Nodes to one file and the DOT graph to another
+     * @param table The file to write the tables to
+     * @param graph The file to write the DOT graph to
+     * @throws IOException If either file could not be written
+     */
+    public void write(Path table, Path graph) throws IOException{
+        Counters total = total();
+        double sum = Arrays.stream(estimate(total)).sum();
+        String header = String.format("%d nodes, %d rows, one row in %d timed, about %.3f ms evaluating nodes%n%n", network.getNodeCount(), total.rows, SAMPLE_PERIOD, sum / 1e6);
+
+        Files.write(table, (header + formatFunctions() + "\n" + formatNodes()).getBytes(StandardCharsets.UTF_8));
+        Files.write(graph, formatDot().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The counts and sampled times one thread records, indexed by the evaluation order of the Nodes
+     */
+    public static class Counters{
+        private final long[] states;
+        private final long[] calls;
+        private final long[] sampledStates;
+        private final long[] sampledNanos;
+        private long rows = 0;
+
+        /**
+         * Constructor for the Counters object
+         * @param nodeCount The number of evaluated Nodes of the network
+         */
+        private Counters(int nodeCount){
+            this.states = new long[nodeCount];
+            this.calls = new long[nodeCount];
+            this.sampledStates = new long[nodeCount];
+            this.sampledNanos = new long[nodeCount];
+        }
+
+        /**
+         * Starts a new row
+         * @return Returns whether the Nodes of the row should be timed
+         */
+        public boolean nextRow(){
+            return rows++ % SAMPLE_PERIOD == 0;
+        }
+
+        /**
+         * Records one evaluation of a Node over part of a row
+         * @param k The index of the Node in evaluation order
+         * @param states How many states the Node was evaluated for
+         * @param nanos How long the evaluation took, or -1 if it was not timed
+         */
+        public void record(int k, int states, long nanos){
+            this.states[k] += states;
+            calls[k]++;
+
+            if(nanos >= 0){
+                sampledStates[k] += states;
+                sampledNanos[k] += nanos;
+            }
+
+        }
+
+    }
+
+}
\ No newline at end of file
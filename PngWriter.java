@@ -0,0 +1,497 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Object that encodes an RGB image to PNG one row at a time, so the whole image never has to be held in memory
+ *
+ * Filtered rows are gathered into blocks that are deflated independently on a pool of threads, the
+ * way pigz does it. Each block is primed with the last 32K of the block before it and ends on a
+ * sync flush, so the blocks join into one ordinary zlib stream.
+ */
+public class PngWriter implements Closeable{
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int DICTIONARY_SIZE = 1 << 15;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private OutputStream out;
+    private int width;
+    private int height;
+    private int level;
+    private int rowsWritten = 0;
+    private byte[] previous;
+    private byte[] current;
+    private byte[][] filtered = new byte[5][];
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength = 0;
+    private byte[] dictionary = null;
+    private Adler32 adler = new Adler32();
+    private ChunkStream chunks;
+    private ExecutorService executor;
+    private ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private int maxPending;
+
+    /**
+     * Constructor for the PngWriter object, which writes the PNG header straight away
+     * @param out The stream to write the PNG to
+     * @param width How many pixels per row
+     * @param height How many rows
+     * @param level The deflate compression level, from 0 to 9 or -1 for the default
+     * @param threads How many threads to compress with, 1 compresses on the calling thread
+     * @throws IOException If the header could not be written
+     */
+    public PngWriter(OutputStream out, int width, int height, int level, int threads) throws IOException{
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        this.previous = new byte[width * BYTES_PER_PIXEL];
+        this.current = new byte[width * BYTES_PER_PIXEL];
+        this.maxPending = Math.max(1, threads) * 2;
+
+        for(int f = 0; f < filtered.length; f++){
+            filtered[f] = new byte[width * BYTES_PER_PIXEL + 1];
+        }
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8;
+        header[9] = 2;
+
+        out.write(SIGNATURE);
+        writeChunk("IHDR", header, 0, header.length);
+
+        // zlib header for a 32K window, with the level hint the compression level maps to
+        int levelHint = level < 0 || level == 6 ? 2 : level < 2 ? 0 : level < 6 ? 1 : 3;
+        int flags = levelHint << 6;
+        flags += 31 - (0x78 * 256 + flags) % 31;
+        this.chunks = new ChunkStream();
+        chunks.write(new byte[]{0x78, (byte) flags}, 0, 2);
+
+        // started last so a header that fails to write leaves no threads behind
+        if(threads > 1){
+            this.executor = Executors.newFixedThreadPool(threads);
+        }
+
+    }
+
+    /**
+     * Encodes a whole TYPE_INT_RGB image straight from its backing array
+     * @param image The image to encode
+     * @param file The file to write the PNG to
+     * @param level The deflate compression level, from 0 to 9 or -1 for the default
+     * @param threads How many threads to compress with
+     * @throws IOException If the PNG could not be written
+     */
+    public static void write(BufferedImage image, File file, int level, int threads) throws IOException{
+        write(image, new BufferedOutputStream(new FileOutputStream(file)), level, threads);
+    }
+
+    /**
+     * Encodes a whole TYPE_INT_RGB image straight from its backing array
+     * @param image The image to encode
+     * @param out The stream to write the PNG to, which is closed once the PNG is written
+     * @param level The deflate compression level, from 0 to 9 or -1 for the default
+     * @param threads How many threads to compress with
+     * @throws IOException If the PNG could not be written
+     */
+    public static void write(BufferedImage image, OutputStream out, int level, int threads) throws IOException{
+        if(image.getType() != BufferedImage.TYPE_INT_RGB) throw new Error("Only TYPE_INT_RGB images can be written directly");
+
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int stride = ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+
+        PngWriter writer;
+
+        try{
+            writer = new PngWriter(out, image.getWidth(), image.getHeight(), level, threads);
+        } catch(IOException e){
+            out.close();
+            throw e;
+        }
+
+        try(PngWriter png = writer){
+
+            for(int y = 0; y < image.getHeight(); y++){
+                png.writeRow(pixels, y * stride);
+            }
+
+        }
+
+    }
+
+    /**
+     * Encodes the next row of the image
+     * @param pixels The packed 0xRRGGBB pixels of the row
+     * @param offset The index of the first pixel of the row in pixels
+     * @throws IOException If the row could not be written
+     */
+    public void writeRow(int[] pixels, int offset) throws IOException{
+        if(rowsWritten >= height) throw new Error("Tried to write more rows than the image height");
+
+        for(int x = 0; x < width; x++){
+            int rgb = pixels[offset + x];
+            current[x * 3] = (byte) (rgb >> 16);
+            current[x * 3 + 1] = (byte) (rgb >> 8);
+            current[x * 3 + 2] = (byte) rgb;
+        }
+
+        byte[] row = filterRow(current, rowsWritten == 0 ? null : previous);
+        adler.update(row, 0, row.length);
+
+        for(int written = 0; written < row.length;){
+            int copied = Math.min(row.length - written, block.length - blockLength);
+            System.arraycopy(row, written, block, blockLength, copied);
+            blockLength += copied;
+            written += copied;
+
+            if(blockLength == block.length){
+                submitBlock(false);
+            }
+
+        }
+
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        rowsWritten++;
+    }
+
+    /**
+     * Finishes the compressed data and writes the end of the PNG, without closing the underlying stream
+     * @throws IOException If the data could not be written
+     */
+    public void finish() throws IOException{
+
+        try{
+            if(rowsWritten != height) throw new Error("Expected " + height + " rows but got " + rowsWritten);
+
+            submitBlock(true);
+
+            while(!pending.isEmpty()){
+                writePending();
+            }
+
+        } finally{
+
+            if(executor != null){
+                executor.shutdown();
+            }
+
+        }
+
+        byte[] checksum = new byte[4];
+        writeInt(checksum, 0, (int) adler.getValue());
+        chunks.write(checksum, 0, checksum.length);
+        chunks.flush();
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    /**
+     * Finishes the PNG and closes the underlying stream
+     * @throws IOException If the data could not be written
+     */
+    @Override
+    public void close() throws IOException{
+
+        try{
+            finish();
+        } finally{
+            out.close();
+        }
+
+    }
+
+    /**
+     * Hands the current block over to be compressed and starts a new one
+     * @param last Whether this is the final block of the stream
+     * @throws IOException If finished blocks could not be written
+     */
+    private void submitBlock(boolean last) throws IOException{
+        byte[] data = block;
+        int length = blockLength;
+        byte[] primer = dictionary;
+
+        if(!last){
+            dictionary = new byte[DICTIONARY_SIZE];
+            System.arraycopy(data, length - DICTIONARY_SIZE, dictionary, 0, DICTIONARY_SIZE);
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+        }
+
+        if(executor == null){
+            byte[] compressed = compress(data, length, primer, last, level);
+            chunks.write(compressed, 0, compressed.length);
+            return;
+        }
+
+        pending.add(executor.submit(() -> compress(data, length, primer, last, level)));
+
+        while(pending.size() > maxPending){
+            writePending();
+        }
+
+    }
+
+    /**
+     * Waits for the oldest block still being compressed and writes it
+     * @throws IOException If the block could not be compressed or written
+     */
+    private void writePending() throws IOException{
+
+        try{
+            byte[] compressed = pending.remove().get();
+            chunks.write(compressed, 0, compressed.length);
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch(ExecutionException e){
+            throw new IOException(e.getCause());
+        }
+
+    }
+
+    /**
+     * Deflates a block without a zlib wrapper so it can be joined with the blocks around it
+     * @param data The filtered bytes of the block
+     * @param length How many bytes of data to compress
+     * @param primer The 32K preceding the block, or null for the first block
+     * @param last Whether to end the deflate stream after this block
+     * @param level The deflate compression level
+     * @return Returns the compressed block
+     */
+    private static byte[] compress(byte[] data, int length, byte[] primer, boolean last, int level){
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = new byte[CHUNK_SIZE];
+
+        try{
+
+            if(primer != null){
+                deflater.setDictionary(primer);
+            }
+
+            deflater.setInput(data, 0, length);
+
+            if(last){
+                deflater.finish();
+
+                while(!deflater.finished()){
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+
+            } else{
+                int count;
+
+                do{
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while(count == buffer.length);
+
+            }
+
+        } finally{
+            deflater.end();
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Picks the PNG filter with the smallest sum of absolute differences for a row, as libpng does
+     * @param row The raw bytes of the row
+     * @param above The raw bytes of the row above, or null for the first row
+     * @return Returns the filter type byte followed by the filtered row
+     */
+    private byte[] filterRow(byte[] row, byte[] above){
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+
+        for(int f = 0; f < filtered.length; f++){
+            byte[] target = filtered[f];
+            target[0] = (byte) f;
+            long sum = 0;
+
+            for(int i = 0; i < row.length; i++){
+                int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 255 : 0;
+                int b = above == null ? 0 : above[i] & 255;
+                int c = i >= BYTES_PER_PIXEL && above != null ? above[i - BYTES_PER_PIXEL] & 255 : 0;
+                int predictor = 0;
+
+                switch(f){
+                    case 1:
+                        predictor = a;
+                        break;
+                    case 2:
+                        predictor = b;
+                        break;
+                    case 3:
+                        predictor = (a + b) >> 1;
+                        break;
+                    case 4:
+                        predictor = paeth(a, b, c);
+                        break;
+                }
+
+                byte value = (byte) (row[i] - predictor);
+                target[i + 1] = value;
+                sum += Math.abs(value);
+            }
+
+            if(sum < bestSum){
+                bestSum = sum;
+                best = f;
+            }
+
+        }
+
+        return filtered[best];
+    }
+
+    /**
+     * The Paeth predictor from the PNG specification
+     * @param a The byte to the left
+     * @param b The byte above
+     * @param c The byte above and to the left
+     * @return Returns whichever of a, b or c is closest to a + b - c
+     */
+    private static int paeth(int a, int b, int c){
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+
+        if(pa <= pb && pa <= pc){
+            return a;
+        } else if(pb <= pc){
+            return b;
+        } else{
+            return c;
+        }
+
+    }
+
+    /**
+     * Writes a PNG chunk with its length and CRC
+     * @param type The four letter chunk type
+     * @param data The array holding the chunk data
+     * @param offset The index of the chunk data in data
+     * @param length The length of the chunk data
+     * @throws IOException If the chunk could not be written
+     */
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException{
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        byte[] number = new byte[4];
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+
+        writeInt(number, 0, length);
+        out.write(number);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        writeInt(number, 0, (int) crc.getValue());
+        out.write(number);
+    }
+
+    /**
+     * Stores an int in big-endian order
+     * @param target The array to store the int in
+     * @param offset The index of the first byte
+     * @param value The int to store
+     */
+    private static void writeInt(byte[] target, int offset, int value){
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Stream that packs compressed data into IDAT chunks
+     */
+    private class ChunkStream extends OutputStream{
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+
+        /**
+         * Buffers a single byte of compressed data
+         * @param b The byte to buffer
+         * @throws IOException If a full chunk could not be written
+         */
+        @Override
+        public void write(int b) throws IOException{
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        /**
+         * Buffers compressed data, writing an IDAT chunk each time the buffer fills up
+         * @param data The compressed data
+         * @param offset The index of the first byte
+         * @param length How many bytes to buffer
+         * @throws IOException If a full chunk could not be written
+         */
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException{
+
+            while(length > 0){
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(data, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+
+                if(count == buffer.length){
+                    flush();
+                }
+
+            }
+
+        }
+
+        /**
+         * Writes the buffered data as an IDAT chunk
+         * @throws IOException If the chunk could not be written
+         */
+        @Override
+        public void flush() throws IOException{
+
+            if(count > 0){
+                writeChunk("IDAT", buffer, 0, count);
+                count = 0;
+            }
+
+        }
+
+        /**
+         * Writes any remaining data, the underlying stream is closed by the PngWriter
+         * @throws IOException If the chunk could not be written
+         */
+        @Override
+        public void close() throws IOException{
+            flush();
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * On-disk cache of the raw outputs of rendered grids, before they are normalized
+ *
+ * Each entry holds the outputs of one Genome at one Quality over a grid of one size, along with
+ * their minimum and maximum, in a file named after a hash of the encoded Genome and the grid size.
+ * A grid of (m - 1) * k + 1 tiles contains every tile of a grid of m tiles, so a larger render can
+ * start from any cached smaller one that fits. Entries past the size budget are evicted least
+ * recently used first, going by their modification time, which a hit refreshes.
+ */
+public class RenderCache{
+    private static final byte[] MAGIC = {'C', 'P', 'N', 'R'};
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".planes";
+
+    private final Path directory;
+    private final long budget;
+
+    /**
+     * Constructor for the RenderCache object
+     * @param directory The directory to keep the cache in, created if it does not exist
+     * @param budget How many bytes the cache may hold before it evicts entries
+     * @throws IOException If the directory could not be created
+     */
+    public RenderCache(Path directory, long budget) throws IOException{
+        this.directory = directory;
+        this.budget = budget;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Renders a grid, reusing the cached outputs of the same or a coarser grid where possible and caching the result
+     * @param genome The Genome to render
+     * @param numTiles How many tiles per side of the grid
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     * @param threads How many threads to evaluate rows with
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     * @return Returns the raw outputs indexed [output][row][column]
+     * @throws IOException If the cache could not be read or written
+     */
+    public double[][][] render(Genome genome, int numTiles, Node.Quality quality, int threads, double[] minVals, double[] maxVals) throws IOException{
+        String key = key(genome, quality);
+        double[][][] vals = load(key, numTiles, minVals, maxVals);
+        if(vals != null) return vals;
+
+        double[][][] known = loadCoarser(key, genome.getInputs(), numTiles, minVals, maxVals);
+
+        try(Renderer renderer = new Renderer(genome, numTiles, quality)){
+
+            if(known != null){
+                renderer.setKnown(known, (numTiles - 1) / (known[0].length - 1));
+            }
+
+            vals = renderer.render(threads);
+        }
+
+        Renderer.findRange(vals, numTiles, minVals, maxVals);
+        store(key, numTiles, vals, minVals, maxVals);
+        return vals;
+    }
+
+    /**
+     * Reads the largest cached grid that lies on a grid of a given size, for Renderer.setKnown()
+     * @param key The key of the Genome from key()
+     * @param inputs The InputTypes of the Genome, nothing is reused if COUNTER is one of them
+     * @param numTiles How many tiles per side of the grid
+     * @param minVals The running minimum of each output, merged with the cached minimum
+     * @param maxVals The running maximum of each output, merged with the cached maximum
+     * @return Returns the raw outputs of the cached grid indexed [output][row][column], or null if there is none
+     * @throws IOException If the entry could not be read
+     */
+    public double[][][] loadCoarser(String key, Genome.InputType[] inputs, int numTiles, double[] minVals, double[] maxVals) throws IOException{
+        if(Arrays.asList(inputs).contains(Genome.InputType.COUNTER)) return null;
+
+        int coarse = findCoarser(key, numTiles);
+        return coarse == 0 ? null : load(key, coarse, minVals, maxVals);
+    }
+
+    /**
+     * Finds the largest cached grid that lies on a grid of a given size
+     * @param key The key of the Genome from key()
+     * @param numTiles How many tiles per side of the grid
+     * @return Returns the number of tiles per side of the cached grid, or 0 if there is none
+     */
+    public int findCoarser(String key, int numTiles){
+        String prefix = key + "_";
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX));
+        int best = 0;
+        if(files == null) return best;
+
+        for(File file : files){
+            String name = file.getName();
+
+            try{
+                int size = Integer.parseInt(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+
+                if(size > best && size > 1 && size < numTiles && (numTiles - 1) % (size - 1) == 0){
+                    best = size;
+                }
+
+            } catch(NumberFormatException e){
+                continue;
+            }
+
+        }
+
+        return best;
+    }
+
+    /**
+     * Reads a cached grid
+     * @param key The key of the Genome from key()
+     * @param numTiles How many tiles per side of the grid
+     * @param minVals The running minimum of each output, merged with the cached minimum
+     * @param maxVals The running maximum of each output, merged with the cached maximum
+     * @return Returns the raw outputs indexed [output][row][column], or null if the grid is not cached
+     * @throws IOException If the entry could not be read
+     */
+    public double[][][] load(String key, int numTiles, double[] minVals, double[] maxVals) throws IOException{
+        Path path = entry(key, numTiles);
+        if(!Files.exists(path)) return null;
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            for(byte b : MAGIC){
+                if(map.get() != b) throw new IOException("Not a render cache entry " + path);
+            }
+
+            if(map.getInt() != VERSION || map.getInt() != numTiles) return null;
+
+            int outputs = map.getInt();
+            if(outputs != minVals.length || map.remaining() < ((long) outputs * 2 + (long) outputs * numTiles * numTiles) * 8) throw new IOException("Truncated render cache entry " + path);
+
+            DoubleBuffer doubles = map.asDoubleBuffer();
+            double[][][] vals = new double[outputs][numTiles][numTiles];
+
+            for(int c = 0; c < outputs; c++){
+                minVals[c] = Math.min(minVals[c], doubles.get());
+                maxVals[c] = Math.max(maxVals[c], doubles.get());
+            }
+
+            for(int c = 0; c < outputs; c++){
+
+                for(int i = 0; i < numTiles; i++){
+                    doubles.get(vals[c][i]);
+                }
+
+            }
+
+            path.toFile().setLastModified(System.currentTimeMillis());
+            return vals;
+        }
+
+    }
+
+    /**
+     * Writes a grid to the cache, then evicts the least recently used entries over the budget
+     * @param key The key of the Genome from key()
+     * @param numTiles How many tiles per side of the grid
+     * @param vals The raw outputs indexed [output][row][column]
+     * @param minVals The minimum of each output
+     * @param maxVals The maximum of each output
+     * @throws IOException If the entry could not be written
+     */
+    public void store(String key, int numTiles, double[][][] vals, double[] minVals, double[] maxVals) throws IOException{
+        long size = 16 + ((long) vals.length * 2 + (long) vals.length * numTiles * numTiles) * 8;
+        if(size > budget) return;
+
+        Path path = entry(key, numTiles);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)){
+            ByteBuffer buffer = ByteBuffer.allocate(16 + vals.length * 16);
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(numTiles);
+            buffer.putInt(vals.length);
+
+            for(int c = 0; c < vals.length; c++){
+                buffer.putDouble(minVals[c]);
+                buffer.putDouble(maxVals[c]);
+            }
+
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            ByteBuffer row = ByteBuffer.allocate(numTiles * 8);
+
+            for(int c = 0; c < vals.length; c++){
+
+                for(int i = 0; i < numTiles; i++){
+                    row.clear();
+                    row.asDoubleBuffer().put(vals[c][i]);
+                    writeFully(channel, row);
+                }
+
+            }
+
+        }
+
+        // moving the finished file into place keeps other workers from reading it half written
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its budget
+     */
+    private synchronized void evict(){
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if(files == null) return;
+
+        long total = 0;
+
+        for(File file : files){
+            total += file.length();
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        for(int i = 0; i < files.length && total > budget; i++){
+            long length = files[i].length();
+
+            if(files[i].delete()){
+                total -= length;
+            }
+
+        }
+
+    }
+
+    /**
+     * Gets the path of the cache entry of a grid
+     * @param key The key of the Genome from key()
+     * @param numTiles How many tiles per side of the grid
+     * @return Returns the path of the entry
+     */
+    private Path entry(String key, int numTiles){
+        return directory.resolve(key + "_" + numTiles + SUFFIX);
+    }
+
+    /**
+     * Hashes everything the outputs of a Genome depend on apart from the grid size
+     * @param genome The Genome to hash, whose encoding covers its genes, activations, inputs and any legacy network
+     * @param quality The Quality the ActivationFunctions are evaluated at
+     * @return Returns the hash as a hexadecimal string
+     */
+    public static String key(Genome genome, Node.Quality quality){
+
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GenomeFile.encode(genome));
+            digest.update((byte) quality.ordinal());
+
+            StringBuilder hex = new StringBuilder();
+
+            for(byte b : Arrays.copyOf(digest.digest(), 16)){
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch(NoSuchAlgorithmException e){
+            throw new Error("SHA-256 is not available", e);
+        }
+
+    }
+
+    /**
+     * Writes a whole buffer to a channel
+     * @param channel The channel to write to
+     * @param buffer The buffer to write
+     * @throws IOException If the buffer could not be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+
+    }
+
+}
\ No newline at end of file
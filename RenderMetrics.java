@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Times the phases of a single render, as JDK Flight Recorder events and optionally as a JSON summary
+ *
+ * Every phase is committed as a cpnn.RenderPhase event carrying the size of the Genome, the tile
+ * count and the render threads, and JFR records the thread it ran on. Events are only created once
+ * Flight Recorder is initialized, by -XX:StartFlightRecording or jcmd JFR.start, since loading the
+ * event classes alone takes a few hundred milliseconds, so a render without a recording only pays
+ * for reading the clock. When an output is set, finish() appends a line of JSON with the time of
+ * every phase to it, so a batch leaves one line per pattern. Renders that interleave their phases,
+ * such as streamed, progressive and animated ones, are timed as a single RENDER phase after the
+ * Genome is created.
+ */
+public class RenderMetrics{
+
+    /**
+     * The phases of a render, each named as it appears in events and summaries
+     */
+    public static enum Phase{
+        CREATE_GENOME("createGenome"),
+        EVALUATE("evaluate"),
+        NORMALIZE("normalize"),
+        FILL_IMAGE("fillImage"),
+        ENCODE("encode"),
+        IO("io"),
+        RENDER("render");
+
+        private final String label;
+
+        Phase(String label){
+            this.label = label;
+        }
+
+        /**
+         * Get method for the name of the phase
+         * @return Returns the name used in events and summaries
+         */
+        public String getLabel(){return label;}
+    }
+
+    private static Path output = null;
+
+    private final String pattern;
+    private final int tiles;
+    private final int threads;
+    private final long[] nanos = new long[Phase.values().length];
+    private final boolean[] timed = new boolean[Phase.values().length];
+    private final long created = System.nanoTime();
+    private int nodes = 0;
+    private int edges = 0;
+    private Phase phase = null;
+    private long phaseStart = 0;
+    private PhaseEvent event = null;
+
+    /**
+     * Constructor for the RenderMetrics object
+     * @param pattern The name the pattern is saved under
+     * @param tiles How many tiles per side of the grid
+     * @param threads How many threads the render uses
+     */
+    public RenderMetrics(String pattern, int tiles, int threads){
+        this.pattern = pattern;
+        this.tiles = tiles;
+        this.threads = threads;
+    }
+
+    /**
+     * Set method for the file summaries are appended to
+     * @param path The file to append a JSON line per render to, or null to write none
+     */
+    public static synchronized void setOutput(Path path){
+        output = path;
+    }
+
+    /**
+     * Set method for the Genome being rendered, whose size is reported with every later phase
+     * @param genome The Genome of the render
+     */
+    public void setGenome(Genome genome){
+        CompiledNetwork network = genome.getNetwork();
+        this.nodes = network.getNodeCount();
+        this.edges = network.getEdgeCount();
+    }
+
+    /**
+     * Starts timing a phase, ending the one before if it is still running
+     * @param phase The phase that starts
+     */
+    public void begin(Phase phase){
+        if(this.phase != null) end();
+
+        this.phase = phase;
+
+        if(FlightRecorder.isInitialized()){
+            event = new PhaseEvent();
+            event.begin();
+        }
+
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Stops timing the current phase and commits its event
+     */
+    public void end(){
+        if(phase == null) return;
+
+        nanos[phase.ordinal()] += System.nanoTime() - phaseStart;
+        timed[phase.ordinal()] = true;
+
+        if(event != null){
+            event.end();
+
+            if(event.shouldCommit()){
+                event.phase = phase.getLabel();
+                event.pattern = pattern;
+                event.nodes = nodes;
+                event.edges = edges;
+                event.tiles = tiles;
+                event.threads = threads;
+                event.commit();
+            }
+
+        }
+
+        phase = null;
+        event = null;
+    }
+
+    /**
+     * Get method for the time spent in a phase so far
+     * @param phase The phase to look up
+     * @return Returns the nanoseconds spent in the phase
+     */
+    public long getNanos(Phase phase){return nanos[phase.ordinal()];}
+
+    /**
+     * Ends the current phase and appends the summary of the render to the output, if one is set
+     * @throws IOException If the summary could not be written
+     */
+    public void finish() throws IOException{
+        end();
+        if(output == null) return;
+
+        long total = System.nanoTime() - created;
+        StringBuilder json = new StringBuilder("{\"pattern\": \"").append(escape(pattern));
+        json.append("\", \"thread\": \"").append(escape(Thread.currentThread().getName()));
+        json.append("\", \"tiles\": ").append(tiles);
+        json.append(", \"threads\": ").append(threads);
+        json.append(", \"nodes\": ").append(nodes);
+        json.append(", \"edges\": ").append(edges);
+        json.append(", \"seconds\": ").append(total / 1e9);
+        json.append(", \"phases\": {");
+
+        String separator = "";
+
+        for(Phase phase : Phase.values()){
+            if(!timed[phase.ordinal()]) continue;
+
+            json.append(separator).append('"').append(phase.getLabel()).append("\": ").append(nanos[phase.ordinal()] / 1e9);
+            separator = ", ";
+        }
+
+        json.append("}}\n");
+        append(json.toString());
+    }
+
+    /**
+     * Appends a line to the output, one render at a time so lines of a batch never interleave
+     * @param line The line to append
+     * @throws IOException If the line could not be written
+     */
+    private static synchronized void append(String line) throws IOException{
+        if(output == null) return;
+
+        Files.write(output, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Escapes a string for use inside a JSON string
+     * @param text The string to escape
+     * @return Returns the string with quotes, backslashes and control characters escaped
+     */
+    private static String escape(String text){
+        StringBuilder escaped = new StringBuilder(text.length());
+
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+
+            if(c == '"' || c == '\\'){
+                escaped.append('\\').append(c);
+            } else if(c < 0x20){
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else{
+                escaped.append(c);
+            }
+
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * The Flight Recorder event of one phase of a render
+     */
+    @Name("cpnn.RenderPhase")
+    @Label("Render Phase")
+    @Category({"CPNN", "Render"})
+    @Description("A phase of rendering a pattern")
+    @StackTrace(false)
+    static class PhaseEvent extends Event{
+        @Label("Phase")
+        String phase;
+
+        @Label("Pattern")
+        String pattern;
+
+        @Label("Genome Nodes")
+        int nodes;
+
+        @Label("Genome Edges")
+        int edges;
+
+        @Label("Tiles")
+        int tiles;
+
+        @Label("Render Threads")
+        int threads;
+    }
+
+}
\ No newline at end of file
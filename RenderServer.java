@@ -0,0 +1,397 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP server on the loopback interface that renders Genomes to PNG on demand
+ *
+ * GET /render?genome=(name)&tiles=(int)&res=(int) renders a Genome saved in the patterns
+ * directory, or one in the pack when the name starts with pack:, and POST /render?tiles=(int)&res=(int)
+ * renders the Genome in the body, which must be in the binary .gen format. Each tile becomes a
+ * square of res / tiles pixels, as in the window. Results are keyed by a hash of the Genome, so a
+ * Genome is found by its contents whichever way it was sent. Requests for a key that is already being
+ * rendered wait for that render instead of starting another, encoded PNGs are kept in an in-memory
+ * cache evicted least recently used first, and renders run on a fixed pool so a burst of requests
+ * queues instead of overcommitting the machine. Every connection is handled on its own thread.
+ * Genomes must have three outputs, and a render is refused when its grid and value planes would
+ * take more than its worker's share of half the heap, so a full pool always leaves the rest free.
+ */
+public class RenderServer{
+    public static final int MAX_TILES = 4096;
+    public static final int MAX_RES = 8192;
+    public static final int MAX_UPLOAD = 64 << 20;
+
+    private final HttpServer server;
+    private final ExecutorService connections;
+    private final ExecutorService renderPool;
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<String, CompletableFuture<byte[]>>();
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private final long budget;
+    private final Path directory;
+    private final GenomePack pack;
+    private final int defaultTiles;
+    private final Node.Quality quality;
+    private final int pngLevel;
+    private final long renderBudget;
+    private long cachedBytes = 0;
+
+    /**
+     * Constructor for the RenderServer object, which binds the port but does not accept requests until start() is called
+     * @param port The port to listen on
+     * @param workers How many renders may run at once
+     * @param budget How many bytes of encoded PNGs the cache may hold
+     * @param directory The directory Genomes are loaded from by name
+     * @param pack The pack pack: names are loaded from, or null if there is none
+     * @param defaultTiles How many tiles per side when a request does not say
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     * @param pngLevel The deflate compression level, from 0 to 9 or -1 for the default
+     * @throws IOException If the port could not be bound
+     */
+    public RenderServer(int port, int workers, long budget, Path directory, GenomePack pack, int defaultTiles, Node.Quality quality, int pngLevel) throws IOException{
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.connections = Executors.newCachedThreadPool();
+        this.renderPool = Executors.newFixedThreadPool(Math.max(1, workers));
+        this.budget = budget;
+        this.directory = directory;
+        this.pack = pack;
+        this.defaultTiles = defaultTiles;
+        this.quality = quality;
+        this.pngLevel = pngLevel;
+        this.renderBudget = Runtime.getRuntime().maxMemory() / 2 / Math.max(1, workers);
+
+        server.createContext("/render", exchange -> {
+
+            try{
+                handle(exchange);
+            } finally{
+                exchange.close();
+            }
+
+        });
+        server.setExecutor(connections);
+    }
+
+    /**
+     * Starts accepting requests on background threads
+     */
+    public void start(){
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waiting up to a second for open exchanges to finish
+     */
+    public void stop(){
+        server.stop(1);
+        connections.shutdown();
+        renderPool.shutdown();
+    }
+
+    /**
+     * Get method for the port the server listens on, which is useful when it was created with port 0
+     * @return Returns the bound port
+     */
+    public int getPort(){return server.getAddress().getPort();}
+
+    /**
+     * Answers a single request with the PNG of its Genome, or with an error status and message
+     * @param exchange The request and its response
+     * @throws IOException If the response could not be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException{
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        Genome genome;
+        int tiles;
+        int scale;
+
+        try{
+            tiles = Integer.parseInt(query.getOrDefault("tiles", Integer.toString(defaultTiles)));
+            int res = query.containsKey("res") ? Integer.parseInt(query.get("res")) : tiles;
+            if(tiles < 2 || tiles > MAX_TILES || res < 1 || res > MAX_RES) throw new NumberFormatException();
+
+            scale = Math.max(1, res / tiles);
+        } catch(NumberFormatException e){
+            respond(exchange, 400, "tiles must be 2 to " + MAX_TILES + " and res 1 to " + MAX_RES, null);
+            return;
+        }
+
+        try{
+
+            if(exchange.getRequestMethod().equals("POST")){
+                genome = GenomeFile.decode(ByteBuffer.wrap(readBody(exchange.getRequestBody())));
+            } else if(exchange.getRequestMethod().equals("GET") && query.containsKey("genome")){
+                genome = loadGenome(query.get("genome"));
+            } else{
+                respond(exchange, 400, "GET needs a genome name, or POST a genome", null);
+                return;
+            }
+
+        } catch(IOException | RuntimeException e){
+            respond(exchange, 404, "Could not load genome: " + e.getMessage(), null);
+            return;
+        }
+
+        if(genome.getOutputSize() != 3){
+            respond(exchange, 400, "Genome has " + genome.getOutputSize() + " outputs but a PNG needs 3", null);
+            return;
+        }
+
+        long memory = estimateMemory(genome, tiles);
+
+        if(memory > renderBudget){
+            respond(exchange, 400, "Render would take " + (memory >> 20) + " MB, more than the " + (renderBudget >> 20) + " MB each worker may use", null);
+            return;
+        }
+
+        String key = RenderCache.key(genome, quality) + "_" + tiles + "_" + scale;
+        byte[] png = getCached(key);
+
+        if(png != null){
+            respondPng(exchange, png, "hit");
+            return;
+        }
+
+        CompletableFuture<byte[]> render = new CompletableFuture<byte[]>();
+        CompletableFuture<byte[]> running = pending.putIfAbsent(key, render);
+
+        if(running == null){
+
+            // the last render of the key may have finished since the cache was checked
+            png = getCached(key);
+
+            if(png != null){
+                pending.remove(key, render);
+                respondPng(exchange, png, "hit");
+                return;
+            }
+
+            running = render;
+            render.whenComplete((bytes, error) -> {
+
+                // cached before it stops being pending, so no request in between misses both
+                if(bytes != null) putCached(key, bytes);
+                pending.remove(key, render);
+            });
+            renderPool.execute(() -> {
+
+                try{
+                    render.complete(renderPng(genome, tiles, scale));
+                } catch(Throwable e){
+                    render.completeExceptionally(e);
+                }
+
+            });
+        }
+
+        try{
+            respondPng(exchange, running.get(), running == render ? "miss" : "coalesced");
+        } catch(ExecutionException e){
+            respond(exchange, 500, "Render failed: " + e.getCause(), null);
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Interrupted", null);
+        }
+
+    }
+
+    /**
+     * Loads a Genome by the name it was saved under, refusing names that would leave the patterns directory
+     * @param name The name without extension, or pack:(name) to load from the pack
+     * @return Returns the Genome
+     * @throws IOException If there is no Genome by that name or it is malformed
+     */
+    private Genome loadGenome(String name) throws IOException{
+
+        if(name.startsWith("pack:")){
+            if(pack == null) throw new IOException("No pack is open");
+
+            return pack.get(name.substring(5));
+        }
+
+        if(!name.matches("[A-Za-z0-9_.-]+") || name.contains("..")) throw new IOException("Bad genome name " + name);
+
+        Path path = directory.resolve(name + ".gen");
+        if(!Files.isRegularFile(path)) throw new IOException("No genome named " + name);
+
+        return GenomeFile.read(path);
+    }
+
+    /**
+     * Estimates the memory a render takes, from the raw outputs of the grid and a row of value planes
+     * for every Node the genome can have, without compiling it
+     * @param genome The Genome to render
+     * @param tiles How many tiles per side of the grid
+     * @return Returns the estimated bytes
+     */
+    private static long estimateMemory(Genome genome, int tiles){
+        long nodes = genome.getInputs().length + 1 + genome.getOutputSize();
+
+        for(Gene gene : genome.getGenes()){
+            nodes = Math.max(nodes, Math.max(gene.getInput(), gene.getOutput()) + 1L);
+        }
+
+        return 8L * tiles * ((long) genome.getOutputSize() * tiles + nodes);
+    }
+
+    /**
+     * Renders a Genome on the calling thread and encodes it as a PNG with each tile scaled to a square of pixels
+     * @param genome The Genome to render
+     * @param tiles How many tiles per side of the grid
+     * @param scale How many pixels per side of each tile
+     * @return Returns the bytes of the PNG
+     */
+    private byte[] renderPng(Genome genome, int tiles, int scale){
+        double[][][] vals = new Renderer(genome, tiles, quality).render(1);
+        double[] maxVals = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] minVals = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        Renderer.findRange(vals, tiles, minVals, maxVals);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] row = new int[tiles * scale];
+
+        try(PngWriter png = new PngWriter(out, tiles * scale, tiles * scale, pngLevel, 1)){
+
+            for(int i = 0; i < tiles; i++){
+
+                for(int j = 0; j < tiles; j++){
+                    int rgb = 0;
+
+                    for(int c = 0; c < 3; c++){
+                        rgb += Renderer.toChannel(vals[c][i][j], minVals[c], maxVals[c]) << (8 * c);
+                    }
+
+                    for(int k = 0; k < scale; k++){
+                        row[j * scale + k] = rgb;
+                    }
+
+                }
+
+                for(int k = 0; k < scale; k++){
+                    png.writeRow(row, 0);
+                }
+
+            }
+
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Looks up an encoded PNG, marking it as the most recently used
+     * @param key The key of the render
+     * @return Returns the PNG, or null if it is not cached
+     */
+    private synchronized byte[] getCached(String key){
+        return images.get(key);
+    }
+
+    /**
+     * Caches an encoded PNG, evicting the least recently used ones until the cache fits its budget
+     * @param key The key of the render
+     * @param png The PNG, which is not cached at all if it is larger than the whole budget
+     */
+    private synchronized void putCached(String key, byte[] png){
+        if(png.length > budget) return;
+
+        byte[] previous = images.put(key, png);
+        cachedBytes += png.length - (previous == null ? 0 : previous.length);
+
+        for(Iterator<byte[]> it = images.values().iterator(); cachedBytes > budget && it.hasNext();){
+            cachedBytes -= it.next().length;
+            it.remove();
+        }
+
+    }
+
+    /**
+     * Reads a whole request body, up to MAX_UPLOAD bytes
+     * @param in The body of the request
+     * @return Returns the bytes of the body
+     * @throws IOException If the body could not be read or is too large
+     */
+    private static byte[] readBody(InputStream in) throws IOException{
+        byte[] body = in.readNBytes(MAX_UPLOAD + 1);
+        if(body.length > MAX_UPLOAD) throw new IOException("Genome larger than " + MAX_UPLOAD + " bytes");
+
+        return body;
+    }
+
+    /**
+     * Splits a URL query into its parameters
+     * @param query The raw query, or null if there is none
+     * @return Returns the decoded value of each parameter by name
+     */
+    private static Map<String, String> parseQuery(String query){
+        Map<String, String> params = new HashMap<String, String>();
+        if(query == null) return params;
+
+        for(String pair : query.split("&")){
+            int split = pair.indexOf('=');
+            if(split <= 0) continue;
+
+            params.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+        }
+
+        return params;
+    }
+
+    /**
+     * Sends a PNG
+     * @param exchange The request to answer
+     * @param png The bytes of the PNG
+     * @param cacheStatus Whether the PNG was a hit, a miss or coalesced with another request, sent as X-Cache
+     * @throws IOException If the response could not be sent
+     */
+    private static void respondPng(HttpExchange exchange, byte[] png, String cacheStatus) throws IOException{
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("X-Cache", cacheStatus);
+        respond(exchange, 200, null, png);
+    }
+
+    /**
+     * Sends a response with either a plain text message or a body
+     * @param exchange The request to answer
+     * @param status The HTTP status code
+     * @param message The plain text message, or null to send body
+     * @param body The body, used if there is no message
+     * @throws IOException If the response could not be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String message, byte[] body) throws IOException{
+
+        if(message != null){
+            body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+
+        exchange.sendResponseHeaders(status, body.length);
+
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(body);
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,874 @@
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Object that evaluates a Genome over a square grid of tiles
+ *
+ * Every worker evaluates its own band of rows with its own value planes, and every input is computed
+ * from the (i, j) index of the tile, so the result does not depend on how the rows are split. Work
+ * is spread over a single ForkJoinPool kept for the life of the Renderer, so renders made of many
+ * calls, such as streamed strips or adaptive batches, do not start and stop a pool for each one.
+ */
+public class Renderer implements Closeable{
+    private static final int BAND_ROWS = 4;
+    private static final int POINT_BATCH = 1024;
+
+    private final CompiledNetwork network;
+    private final Genome.InputType[] inputTypes;
+    private final int numTiles;
+    private final int[] rowSources;
+    private final int[] columnSources;
+    private final boolean radial;
+    private double[][][] known = null;
+    private int knownStep = 0;
+    private double time = 0;
+    private NodeProfiler profiler = null;
+    private ForkJoinPool pool = null;
+
+    /**
+     * Constructor for the Renderer object
+     * @param genome The Genome to evaluate
+     * @param numTiles How many tiles per side of the grid
+     * @param quality The Quality to evaluate the ActivationFunctions at
+     */
+    public Renderer(Genome genome, int numTiles, Node.Quality quality){
+        this.network = genome.getNetwork().withQuality(quality);
+        this.inputTypes = genome.getInputs();
+        this.numTiles = numTiles;
+
+        // every input but X and Y reads a coordinate through its square, which does not change when it is mirrored
+        List<Genome.InputType> inputs = Arrays.asList(inputTypes);
+        boolean counter = inputs.contains(Genome.InputType.COUNTER);
+        boolean squared = inputs.contains(Genome.InputType.DIST) || inputs.contains(Genome.InputType.THETA);
+        boolean mirrorRows = !counter && !inputs.contains(Genome.InputType.X);
+        boolean mirrorColumns = !counter && !inputs.contains(Genome.InputType.Y) && !inputs.contains(Genome.InputType.THETA);
+        this.rowSources = mirrorRows ? findSources(numTiles, !squared) : null;
+        this.columnSources = mirrorColumns ? findSources(numTiles, !inputs.contains(Genome.InputType.DIST)) : null;
+        this.radial = mirrorRows && mirrorColumns;
+    }
+
+    /**
+     * Supplies the outputs of a coarser grid whose points all lie on this grid, so they are copied instead of evaluated
+     *
+     * Tile (i, j) of a grid of (m - 1) * step + 1 tiles has the same x and y as tile (i / step,
+     * j / step) of a grid of m tiles whenever both are multiples of step, since both divisions round
+     * the same exact quotient. COUNTER depends on the size of the grid, so it cannot be reused.
+     * @param known The raw outputs of the coarser grid indexed [output][row][column]
+     * @param step How many tiles of this grid lie between neighbouring tiles of the coarser grid
+     */
+    public void setKnown(double[][][] known, int step){
+        if(step < 1 || (numTiles - 1) % step != 0 || known[0].length != (numTiles - 1) / step + 1) throw new Error("Coarser grid does not lie on this grid");
+        if(Arrays.asList(inputTypes).contains(Genome.InputType.COUNTER)) throw new Error("COUNTER differs between grid sizes");
+
+        this.known = known;
+        this.knownStep = step;
+    }
+
+    /**
+     * Set method for the TIME input, which is the same for every tile of a render
+     * @param time The value of TIME, from -1 at the first frame of an animation to 1 at the last
+     */
+    public void setTime(double time){this.time = time;}
+
+    /**
+     * Set method for the NodeProfiler that records every Node evaluated by render()
+     * @param profiler The NodeProfiler of this Renderer's network, or null to record nothing
+     */
+    public void setProfiler(NodeProfiler profiler){this.profiler = profiler;}
+
+    /**
+     * Allocates the input planes for a batch, with the TIME plane already filled since no tile changes it
+     * @param length The largest batch the planes will be used for
+     * @return Returns the input planes indexed by InputType ordinal
+     */
+    private double[][] newInputPlanes(int length){
+        double[][] inputPlanes = new double[Genome.InputType.values().length][length];
+        Arrays.fill(inputPlanes[Genome.InputType.TIME.ordinal()], time);
+        return inputPlanes;
+    }
+
+    /**
+     * Evaluates every tile of the grid
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     * @return Returns the raw outputs indexed [output][row][column]
+     */
+    public double[][][] render(int threads){
+        double[][][] vals = new double[network.getOutputSize()][numTiles][numTiles];
+
+        if(known == null && (rowSources != null || columnSources != null)){
+            renderSymmetric(vals, threads);
+        } else{
+            renderRows(vals, 0, numTiles, threads);
+        }
+
+        return vals;
+    }
+
+    /**
+     * Evaluates the tiles of the grid that its symmetries do not map onto another tile, then copies them to the rest
+     *
+     * Without X or COUNTER, a row and its mirror image only differ in the square of x, and without Y,
+     * THETA or COUNTER the same holds for columns and y. Rounding makes some mirrored coordinates
+     * differ by an ulp, so only rows and columns whose squares are exactly equal are paired, which
+     * keeps the result identical to evaluating every tile. When neither coordinate is read directly,
+     * the outputs only depend on the distance, which is also symmetric across the diagonal.
+     * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    private void renderSymmetric(double[][][] vals, int threads){
+        int[] rows = new int[numTiles];
+        int count = 0;
+
+        for(int i = 0; i < numTiles; i++){
+
+            if(rowSources == null || rowSources[i] == i){
+                rows[count++] = i;
+            }
+
+        }
+
+        if(threads <= 1 || count <= BAND_ROWS){
+            evaluateSymmetricRows(vals, rows, 0, count);
+        } else{
+            getPool(threads).invoke(new Rows(vals, rows, 0, count, Math.max(1, count / (threads * 4))));
+        }
+
+        for(int i = 0; i < numTiles; i++){
+
+            for(int j = 0; j < numTiles; j++){
+                int si = rowSources == null ? i : rowSources[i];
+                int sj = columnSources == null ? j : columnSources[j];
+
+                if(radial && si > sj){
+                    int swap = si;
+                    si = sj;
+                    sj = swap;
+                }
+
+                if(si == i && sj == j) continue;
+
+                for(int c = 0; c < vals.length; c++){
+                    vals[c][i][j] = vals[c][si][sj];
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Evaluates the tiles of a set of rows that no symmetry maps onto another tile
+     * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+     * @param rows The rows to evaluate
+     * @param start The index of the first row to evaluate
+     * @param end The index after the last row to evaluate
+     */
+    private void evaluateSymmetricRows(double[][][] vals, int[] rows, int start, int end){
+        double[][] inputPlanes = newInputPlanes(numTiles);
+        double[][] planes = network.newPlanes(numTiles);
+        double[][] scratchPlanes = new double[vals.length][numTiles];
+        int[] rowIndices = new int[numTiles];
+        int[] columns = new int[numTiles];
+        NodeProfiler.Counters counters = profiler == null ? null : profiler.getCounters();
+        boolean sameColumns = false;
+
+        for(int r = start; r < end; r++){
+            int i = rows[r];
+            int count = 0;
+
+            for(int j = radial ? i : 0; j < numTiles; j++){
+
+                if(columnSources == null || columnSources[j] == j){
+                    columns[count++] = j;
+                }
+
+            }
+
+            Arrays.fill(rowIndices, 0, count, i);
+            fillPointInputs(inputPlanes, rowIndices, columns, 0, count, numTiles, inputTypes);
+            network.predictRow(inputPlanes, scratchPlanes, count, planes, sameColumns, counters);
+            sameColumns = !radial;
+
+            for(int c = 0; c < vals.length; c++){
+
+                for(int p = 0; p < count; p++){
+                    vals[c][i][columns[p]] = scratchPlanes[c][p];
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Pairs every row or column with the one it duplicates, going by the square of its coordinate
+     * @param numTiles How many tiles per side of the grid
+     * @param unused Whether the coordinate is not read at all, so every row or column duplicates the first
+     * @return Returns the first row or column with the same square of each one
+     */
+    private static int[] findSources(int numTiles, boolean unused){
+        int[] sources = new int[numTiles];
+
+        for(int k = 0; k < numTiles; k++){
+            int mirror = numTiles - 1 - k;
+            double a = 2.0 * (double) k / (numTiles - 1) - 1;
+            double b = 2.0 * (double) mirror / (numTiles - 1) - 1;
+            sources[k] = unused ? 0 : mirror < k && a * a == b * b ? mirror : k;
+        }
+
+        return sources;
+    }
+
+    /**
+     * Evaluates a band of rows of the grid
+     * @param vals The raw outputs to fill, indexed [output][row - start][column]
+     * @param start The first row to evaluate
+     * @param end The row after the last row to evaluate
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    public void renderRows(double[][][] vals, int start, int end, int threads){
+
+        if(threads <= 1 || end - start <= BAND_ROWS){
+            evaluateRows(vals, start, start, end);
+            return;
+        }
+
+        getPool(threads).invoke(new Band(vals, start, start, end, Math.max(1, (end - start) / (threads * 4)), 1, 0));
+    }
+
+    /**
+     * Evaluates the tiles of a lattice that were not on the previous, coarser lattice
+     *
+     * Rendering with step 4, then 2 with previousStep 4, then 1 with previousStep 2 evaluates every
+     * tile exactly once, with a usable preview after the first pass.
+     * @param vals The raw outputs of the whole grid, indexed [output][row][column]
+     * @param step The distance between tiles of this lattice in both directions
+     * @param previousStep The step of the lattice evaluated before, a multiple of step, or 0 if there was none
+     * @param threads How many threads to evaluate rows with, 1 evaluates them on the calling thread
+     */
+    public void renderPass(double[][][] vals, int step, int previousStep, int threads){
+        if(previousStep != 0 && previousStep % step != 0) throw new Error("Previous lattice does not lie on this lattice");
+
+        if(threads <= 1 || numTiles <= BAND_ROWS * step){
+            evaluateLattice(vals, 0, numTiles, step, previousStep);
+            return;
+        }
+
+        getPool(threads).invoke(new Band(vals, 0, 0, numTiles, Math.max(step, numTiles / (threads * 4)), step, previousStep));
+    }
+
+    /**
+     * Evaluates a scattered set of tiles of the grid
+     * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+     * @param rows The row of each tile
+     * @param columns The column of each tile
+     * @param count How many tiles to evaluate
+     * @param threads How many threads to evaluate tiles with, 1 evaluates them on the calling thread
+     */
+    public void renderPoints(double[][][] vals, int[] rows, int[] columns, int count, int threads){
+
+        if(threads <= 1 || count <= POINT_BATCH){
+            evaluatePoints(vals, rows, columns, 0, count);
+            return;
+        }
+
+        getPool(threads).invoke(new Points(vals, rows, columns, 0, count));
+    }
+
+    /**
+     * Get method for the pool work is spread over, creating it the first time it is needed
+     *
+     * The pool is replaced if a call asks for a different number of threads than the last one.
+     * @param threads How many threads the pool should have
+     * @return Returns the pool of this Renderer
+     */
+    private synchronized ForkJoinPool getPool(int threads){
+
+        if(pool == null || pool.getParallelism() != threads){
+            if(pool != null) pool.shutdown();
+
+            pool = new ForkJoinPool(threads);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Shuts down the pool of this Renderer, which is created again if the Renderer is used afterwards
+     *
+     * The workers of the pool are daemon threads that stop on their own once idle, so a Renderer that
+     * is never closed does not keep the JVM alive.
+     */
+    @Override
+    public synchronized void close(){
+
+        if(pool != null){
+            pool.shutdown();
+            pool = null;
+        }
+
+    }
+
+    /**
+     * Evaluates scattered tiles in batches with a single set of value planes
+     * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+     * @param rows The row of each tile
+     * @param columns The column of each tile
+     * @param start The index of the first tile to evaluate
+     * @param end The index after the last tile to evaluate
+     */
+    private void evaluatePoints(double[][][] vals, int[] rows, int[] columns, int start, int end){
+        double[][] inputPlanes = newInputPlanes(POINT_BATCH);
+        double[][] planes = network.newPlanes(POINT_BATCH);
+        double[][] scratchPlanes = new double[vals.length][POINT_BATCH];
+
+        for(int from = start; from < end; from += POINT_BATCH){
+            int count = Math.min(POINT_BATCH, end - from);
+            fillPointInputs(inputPlanes, rows, columns, from, count, numTiles, inputTypes);
+            network.predictBatch(inputPlanes, scratchPlanes, count, planes);
+
+            for(int c = 0; c < vals.length; c++){
+
+                for(int p = 0; p < count; p++){
+                    vals[c][rows[from + p]][columns[from + p]] = scratchPlanes[c][p];
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Evaluates rows one after another with a single set of value planes, so Nodes that do not depend on X are kept between rows
+     * @param vals The raw outputs to fill, indexed [output][row - offset][column]
+     * @param offset The row stored at index 0 of vals
+     * @param start The first row to evaluate
+     * @param end The row after the last row to evaluate
+     */
+    private void evaluateRows(double[][][] vals, int offset, int start, int end){
+        double[][] inputPlanes = newInputPlanes(numTiles);
+        double[][] planes = network.newPlanes(numTiles);
+        double[][] outputPlanes = new double[vals.length][];
+        double[][] scratchPlanes = known == null ? null : new double[vals.length][numTiles];
+        NodeProfiler.Counters counters = profiler == null ? null : profiler.getCounters();
+        boolean sameColumns = false;
+
+        for(int i = start; i < end; i++){
+
+            if(known != null && i % knownStep == 0){
+                evaluateKnownRow(vals, offset, i, inputPlanes, planes, scratchPlanes);
+                sameColumns = false;
+                continue;
+            }
+
+            for(int c = 0; c < vals.length; c++){
+                outputPlanes[c] = vals[c][i - offset];
+            }
+
+            fillInputs(inputPlanes, i, numTiles, inputTypes);
+            network.predictRow(inputPlanes, outputPlanes, numTiles, planes, sameColumns, counters);
+            sameColumns = true;
+        }
+
+    }
+
+    /**
+     * Evaluates the tiles of a band of rows that are on a lattice but were not on the previous one
+     * @param vals The raw outputs of the whole grid, indexed [output][row][column]
+     * @param start The first row of the band
+     * @param end The row after the last row of the band
+     * @param step The distance between tiles of this lattice in both directions
+     * @param previousStep The step of the lattice evaluated before, or 0 if there was none
+     */
+    private void evaluateLattice(double[][][] vals, int start, int end, int step, int previousStep){
+        double[][] inputPlanes = newInputPlanes(numTiles);
+        double[][] planes = network.newPlanes(numTiles);
+        double[][] scratchPlanes = new double[vals.length][numTiles];
+
+        for(int i = start + (step - start % step) % step; i < end; i += step){
+
+            if(previousStep == 0 || i % previousStep != 0){
+                evaluateColumns(vals, 0, i, 0, step, (numTiles - 1) / step + 1, inputPlanes, planes, scratchPlanes);
+                continue;
+            }
+
+            for(int r = step; r < previousStep && r < numTiles; r += step){
+                evaluateColumns(vals, 0, i, r, previousStep, (numTiles - 1 - r) / previousStep + 1, inputPlanes, planes, scratchPlanes);
+            }
+
+        }
+
+    }
+
+    /**
+     * Evaluates evenly spaced tiles of a row
+     * @param vals The raw outputs to fill, indexed [output][row - offset][column]
+     * @param offset The row stored at index 0 of vals
+     * @param i The row of the tiles
+     * @param first The column of the first tile
+     * @param stride The distance between columns
+     * @param count How many tiles to evaluate
+     * @param inputPlanes The input planes to evaluate with
+     * @param planes The value planes to evaluate with
+     * @param scratchPlanes The planes to evaluate the tiles into before they are spread over the row
+     */
+    private void evaluateColumns(double[][][] vals, int offset, int i, int first, int stride, int count, double[][] inputPlanes, double[][] planes, double[][] scratchPlanes){
+        fillInputs(inputPlanes, i, first, stride, count, numTiles, inputTypes);
+        network.predictBatch(inputPlanes, scratchPlanes, count, planes);
+
+        for(int c = 0; c < vals.length; c++){
+            double[] row = vals[c][i - offset];
+
+            for(int p = 0; p < count; p++){
+                row[first + p * stride] = scratchPlanes[c][p];
+            }
+
+        }
+
+    }
+
+    /**
+     * Fills a row that lies on the coarser grid, copying the known tiles and evaluating the ones between them
+     * @param vals The raw outputs to fill, indexed [output][row - offset][column]
+     * @param offset The row stored at index 0 of vals
+     * @param i The row to fill
+     * @param inputPlanes The input planes to evaluate with
+     * @param planes The value planes to evaluate with
+     * @param scratchPlanes The planes to evaluate the tiles between the known ones into
+     */
+    private void evaluateKnownRow(double[][][] vals, int offset, int i, double[][] inputPlanes, double[][] planes, double[][] scratchPlanes){
+        int row = i / knownStep;
+        int count = known[0][row].length;
+
+        for(int c = 0; c < vals.length; c++){
+
+            for(int p = 0; p < count; p++){
+                vals[c][i - offset][p * knownStep] = known[c][row][p];
+            }
+
+        }
+
+        for(int r = 1; r < knownStep; r++){
+            evaluateColumns(vals, offset, i, r, knownStep, count - 1, inputPlanes, planes, scratchPlanes);
+        }
+
+    }
+
+    /**
+     * Estimates the minimum and maximum of each output from a coarser lattice of tiles
+     *
+     * Only every step-th tile of every step-th row is evaluated, so extremes between them can be
+     * missed and have to be clamped when normalizing.
+     * @param step The distance between evaluated tiles in both directions
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     */
+    public void sampleRange(int step, double[] minVals, double[] maxVals){
+        int count = (numTiles - 1) / step + 1;
+        double[][] inputPlanes = newInputPlanes(count);
+        double[][] planes = network.newPlanes(count);
+        double[][][] vals = new double[network.getOutputSize()][1][count];
+        double[][] outputPlanes = new double[vals.length][];
+
+        for(int c = 0; c < vals.length; c++){
+            outputPlanes[c] = vals[c][0];
+        }
+
+        for(int i = 0; i < numTiles; i += step){
+            fillInputs(inputPlanes, i, 0, step, count, numTiles, inputTypes);
+            network.predictBatch(inputPlanes, outputPlanes, count, planes);
+            findRange(vals, 1, minVals, maxVals);
+        }
+
+    }
+
+    /**
+     * Finds the minimum and maximum of each output over a set of rows
+     * @param vals The raw outputs indexed [output][row][column]
+     * @param rows How many rows of vals to scan
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     */
+    public static void findRange(double[][][] vals, int rows, double[] minVals, double[] maxVals){
+
+        for(int c = 0; c < vals.length; c++){
+
+            for(int i = 0; i < rows; i++){
+
+                for(double val : vals[c][i]){
+
+                    if(val > maxVals[c]){
+                        maxVals[c] = val;
+                    }
+
+                    if(val < minVals[c]){
+                        minVals[c] = val;
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Finds the minimum and maximum of each output over the tiles of a lattice
+     * @param vals The raw outputs of the whole grid, indexed [output][row][column]
+     * @param step The distance between tiles of the lattice in both directions
+     * @param minVals The running minimum of each output, updated in place
+     * @param maxVals The running maximum of each output, updated in place
+     */
+    public static void findLatticeRange(double[][][] vals, int step, double[] minVals, double[] maxVals){
+
+        for(int c = 0; c < vals.length; c++){
+
+            for(int i = 0; i < vals[c].length; i += step){
+
+                for(int j = 0; j < vals[c][i].length; j += step){
+                    double val = vals[c][i][j];
+
+                    if(val > maxVals[c]){
+                        maxVals[c] = val;
+                    }
+
+                    if(val < minVals[c]){
+                        minVals[c] = val;
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Normalizes a raw output to a colour channel
+     * @param val The raw output
+     * @param min The minimum of the output
+     * @param max The maximum of the output
+     * @return Returns the channel value from 0 to 254
+     */
+    public static int toChannel(double val, double min, double max){
+        return Math.min(254, Math.max(0, (int) (254.0 * (val - min) / (max - min))));
+    }
+
+    /**
+     * Fills the input planes of a row of tiles according to the InputType array of a Genome
+     * @param planes The input planes indexed by InputType ordinal, each at least numTiles long
+     * @param i The row of tiles, which sets the x coordinate
+     * @param numTiles How many tiles per side of the grid
+     * @param inputs The InputType array of the Genome, only these planes but TIME are filled
+     */
+    public static void fillInputs(double[][] planes, int i, int numTiles, Genome.InputType[] inputs){
+        fillInputs(planes, i, 0, 1, numTiles, numTiles, inputs);
+    }
+
+    /**
+     * Fills the input planes for evenly spaced tiles of a row according to the InputType array of a Genome
+     * @param planes The input planes indexed by InputType ordinal, each at least count long
+     * @param i The row of tiles, which sets the x coordinate
+     * @param start The column of the first tile
+     * @param step The distance between columns
+     * @param count How many tiles to fill in
+     * @param numTiles How many tiles per side of the grid
+     * @param inputs The InputType array of the Genome, only these planes but TIME are filled
+     */
+    public static void fillInputs(double[][] planes, int i, int start, int step, int count, int numTiles, Genome.InputType[] inputs){
+        double x = 2.0 * (double) i / (numTiles - 1) - 1;
+
+        for(Genome.InputType input : inputs){
+            double[] plane = planes[input.ordinal()];
+
+            switch(input){
+                case X:
+                    Arrays.fill(plane, 0, count, x);
+                    break;
+                case Y:
+
+                    for(int p = 0, j = start; p < count; p++, j += step){
+                        plane[p] = 2.0 * (double) j / (numTiles - 1) - 1;
+                    }
+
+                    break;
+                case DIST:
+
+                    for(int p = 0, j = start; p < count; p++, j += step){
+                        double y = 2.0 * (double) j / (numTiles - 1) - 1;
+                        plane[p] = Math.sqrt(x * x + y * y);
+                    }
+
+                    break;
+                case THETA:
+
+                    for(int p = 0, j = start; p < count; p++, j += step){
+                        double y = 2.0 * (double) j / (numTiles - 1) - 1;
+                        double dist = Math.sqrt(x * x + y * y);
+                        plane[p] = Math.asin(y / dist) / Math.PI * 2;
+                    }
+
+                    break;
+                case COUNTER:
+
+                    for(int p = 0, j = start; p < count; p++, j += step){
+                        double rawCounter = (double) i * numTiles + j;
+                        plane[p] = 2.0 * rawCounter / numTiles / numTiles - 1;
+                    }
+
+                    break;
+            }
+
+        }
+
+    }
+
+    /**
+     * Fills the input planes for scattered tiles according to the InputType array of a Genome, with the same values fillInputs() gives them
+     * @param planes The input planes indexed by InputType ordinal, each at least count long
+     * @param rows The row of each tile
+     * @param columns The column of each tile
+     * @param start The index of the first tile to fill in
+     * @param count How many tiles to fill in
+     * @param numTiles How many tiles per side of the grid
+     * @param inputs The InputType array of the Genome, only these planes but TIME are filled
+     */
+    public static void fillPointInputs(double[][] planes, int[] rows, int[] columns, int start, int count, int numTiles, Genome.InputType[] inputs){
+
+        for(Genome.InputType input : inputs){
+            double[] plane = planes[input.ordinal()];
+
+            for(int p = 0; p < count; p++){
+                int i = rows[start + p];
+                int j = columns[start + p];
+                double x = 2.0 * (double) i / (numTiles - 1) - 1;
+                double y = 2.0 * (double) j / (numTiles - 1) - 1;
+
+                switch(input){
+                    case X:
+                        plane[p] = x;
+                        break;
+                    case Y:
+                        plane[p] = y;
+                        break;
+                    case DIST:
+                        plane[p] = Math.sqrt(x * x + y * y);
+                        break;
+                    case THETA:
+                        plane[p] = Math.asin(y / Math.sqrt(x * x + y * y)) / Math.PI * 2;
+                        break;
+                    case COUNTER:
+                        double rawCounter = (double) i * numTiles + j;
+                        plane[p] = 2.0 * rawCounter / numTiles / numTiles - 1;
+                        break;
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Fills the input planes for points of a continuous view that share their x coordinate, which need not lie on the grid
+     *
+     * COUNTER is found from the fractional position of each point on the grid, so it matches
+     * fillInputs() wherever a point is the centre of a tile, up to rounding.
+     * @param planes The input planes indexed by InputType ordinal, each at least count long
+     * @param x The x coordinate of the points
+     * @param ys The y coordinate of each point
+     * @param count How many points to fill in
+     * @param numTiles How many tiles per side of the grid COUNTER is measured on
+     * @param inputs The InputType array of the Genome, only these planes but TIME are filled
+     */
+    public static void fillViewInputs(double[][] planes, double x, double[] ys, int count, int numTiles, Genome.InputType[] inputs){
+        double i = (x + 1) * (numTiles - 1) / 2;
+
+        for(Genome.InputType input : inputs){
+            double[] plane = planes[input.ordinal()];
+
+            switch(input){
+                case X:
+                    Arrays.fill(plane, 0, count, x);
+                    break;
+                case Y:
+                    System.arraycopy(ys, 0, plane, 0, count);
+                    break;
+                case DIST:
+
+                    for(int p = 0; p < count; p++){
+                        plane[p] = Math.sqrt(x * x + ys[p] * ys[p]);
+                    }
+
+                    break;
+                case THETA:
+
+                    for(int p = 0; p < count; p++){
+                        plane[p] = Math.asin(ys[p] / Math.sqrt(x * x + ys[p] * ys[p])) / Math.PI * 2;
+                    }
+
+                    break;
+                case COUNTER:
+
+                    for(int p = 0; p < count; p++){
+                        double rawCounter = i * numTiles + (ys[p] + 1) * (numTiles - 1) / 2;
+                        plane[p] = 2.0 * rawCounter / numTiles / numTiles - 1;
+                    }
+
+                    break;
+            }
+
+        }
+
+    }
+
+    /**
+     * Fork/join task that splits a set of rows of a symmetric render in half until it is small enough to evaluate
+     */
+    private class Rows extends RecursiveAction{
+        public static final long serialVersionUID = 10483785;
+        private double[][][] vals;
+        private int[] rows;
+        private int start;
+        private int end;
+        private int grain;
+
+        /**
+         * Constructor of the Rows object
+         * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+         * @param rows The rows to evaluate
+         * @param start The index of the first row to evaluate
+         * @param end The index after the last row to evaluate
+         * @param grain The most rows evaluated without splitting
+         */
+        public Rows(double[][][] vals, int[] rows, int start, int end, int grain){
+            this.vals = vals;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        /**
+         * Evaluates the rows or splits them between two subtasks
+         */
+        @Override
+        protected void compute(){
+
+            if(end - start <= grain){
+                evaluateSymmetricRows(vals, rows, start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new Rows(vals, rows, start, middle, grain), new Rows(vals, rows, middle, end, grain));
+        }
+
+    }
+
+    /**
+     * Fork/join task that splits a set of scattered tiles in half until it is small enough to evaluate
+     */
+    private class Points extends RecursiveAction{
+        public static final long serialVersionUID = 10483784;
+        private double[][][] vals;
+        private int[] rows;
+        private int[] columns;
+        private int start;
+        private int end;
+
+        /**
+         * Constructor of the Points object
+         * @param vals The raw outputs of the whole grid to fill, indexed [output][row][column]
+         * @param rows The row of each tile
+         * @param columns The column of each tile
+         * @param start The index of the first tile to evaluate
+         * @param end The index after the last tile to evaluate
+         */
+        public Points(double[][][] vals, int[] rows, int[] columns, int start, int end){
+            this.vals = vals;
+            this.rows = rows;
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Evaluates the tiles directly if they fit in one batch, otherwise splits them in two
+         */
+        @Override
+        protected void compute(){
+
+            if(end - start <= POINT_BATCH){
+                evaluatePoints(vals, rows, columns, start, end);
+                return;
+            }
+
+            int middle = start + Math.max(1, (end - start) / POINT_BATCH / 2) * POINT_BATCH;
+            invokeAll(new Points(vals, rows, columns, start, middle), new Points(vals, rows, columns, middle, end));
+        }
+
+    }
+
+    /**
+     * Fork/join task that splits a band of rows in half until it is small enough to evaluate
+     */
+    private class Band extends RecursiveAction{
+        public static final long serialVersionUID = 10483783;
+        private double[][][] vals;
+        private int offset;
+        private int start;
+        private int end;
+        private int grain;
+        private int step;
+        private int previousStep;
+
+        /**
+         * Constructor of the Band object
+         * @param vals The raw outputs to fill, indexed [output][row - offset][column]
+         * @param offset The row stored at index 0 of vals
+         * @param start The first row of the band
+         * @param end The row after the last row of the band
+         * @param grain The largest band evaluated without splitting
+         * @param step The distance between tiles of the lattice to evaluate, 1 for every tile
+         * @param previousStep The step of the lattice evaluated before, or 0 if there was none
+         */
+        public Band(double[][][] vals, int offset, int start, int end, int grain, int step, int previousStep){
+            this.vals = vals;
+            this.offset = offset;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+            this.step = step;
+            this.previousStep = previousStep;
+        }
+
+        /**
+         * Evaluates the band or splits it between two subtasks
+         */
+        @Override
+        protected void compute(){
+
+            if(end - start <= grain && step == 1 && previousStep == 0){
+                evaluateRows(vals, offset, start, end);
+                return;
+            } else if(end - start <= grain){
+                evaluateLattice(vals, start, end, step, previousStep);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new Band(vals, offset, start, middle, grain, step, previousStep), new Band(vals, offset, middle, end, grain, step, previousStep));
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -6,7 +6,11 @@ if [ $# -lt 2 ]; then
     RES=400
 fi
 
-for i in $(eval echo $1)
-do
-	java Main LOAD=${i} ANIM=false MIN=true SAVE=true FILE=${i}_${RES} TILES=${RES} RES=${RES}
-done
+# renders in memory unless run as STREAM=true ./enhance.sh, which is only worth it for grids too large to hold
+STREAM=${STREAM:-false}
+
+# caches raw outputs only when run as CACHE=true ./enhance.sh, a RES of 399 also reuses those of generate.sh
+CACHE=${CACHE:-false}
+
+# accepts ranges as bash brace expressions do, such as 1..100, {1..100..5} or {1,5,9}
+java Main "BATCH=$1" "LOAD={i}" ANIM=false MIN=true SAVE=true STREAM=${STREAM} CACHE=${CACHE} "FILE={i}_${RES}" TILES=${RES} RES=${RES}
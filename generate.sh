@@ -6,10 +6,11 @@ if [ $# -lt 2 ]; then
     RES=200
 fi
 
+# caches raw outputs only when run as CACHE=true ./generate.sh, since the cache fills up to CACHE_MB
+CACHE=${CACHE:-false}
+
 mkdir patterns
 javac *.java
 
-for i in $(eval echo $1)
-do
-	java Main FILE=${i} ANIM=false MIN=true SAVE=true TILES=${RES} RES=${RES}
-done
+# accepts ranges as bash brace expressions do, such as 1..100, {1..100..5} or {1,5,9}
+java Main "BATCH=$1" "FILE={i}" ANIM=false MIN=true SAVE=true CACHE=${CACHE} TILES=${RES} RES=${RES}